@@ -0,0 +1,34 @@
+package io.ebean.datasource;
+
+/**
+ * Connection usage statistics of a call site (the code that obtained the connections).
+ * <p>
+ * Collected when {@link DataSourceBuilder#callSiteTracking(boolean)} is enabled.
+ */
+public interface CallSiteStatus {
+
+  /**
+   * Return the id of the call site.
+   */
+  int id();
+
+  /**
+   * Return the call site as the frames (outside the skipped packages) that obtained the connections.
+   */
+  String callSite();
+
+  /**
+   * Return the number of connections obtained by the call site.
+   */
+  long borrowCount();
+
+  /**
+   * Return the total time in micros the connections were held by the call site.
+   */
+  long totalHoldMicros();
+
+  /**
+   * Return the max time in micros a connection was held by the call site.
+   */
+  long maxHoldMicros();
+}
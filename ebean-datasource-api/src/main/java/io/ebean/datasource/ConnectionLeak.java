@@ -0,0 +1,44 @@
+package io.ebean.datasource;
+
+/**
+ * A connection that has been held for longer than leakDetectionMillis and is suspected to have leaked.
+ *
+ * @see DataSourcePoolListener#onLeakSuspected(ConnectionLeak)
+ */
+public interface ConnectionLeak {
+
+  /**
+   * Return the name of the pool.
+   */
+  String poolName();
+
+  /**
+   * Return the name of the connection.
+   */
+  String connectionName();
+
+  /**
+   * Return the time in millis the connection has been held.
+   */
+  long heldMillis();
+
+  /**
+   * Return the last statement executed on the connection (can be null).
+   */
+  String lastStatement();
+
+  /**
+   * Return the call site that obtained the connection (null when callSiteTracking is off).
+   */
+  String callSite();
+
+  /**
+   * Return the full description of the connection including the stack trace when available.
+   */
+  String description();
+
+  /**
+   * Return true if the connection was closed and removed from the pool.
+   */
+  boolean reclaimed();
+}
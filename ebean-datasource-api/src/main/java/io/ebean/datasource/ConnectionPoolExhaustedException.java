@@ -7,7 +7,22 @@ import java.sql.SQLException;
  * @author Roland Praml, Foconis Analytics GmbH
  */
 public class ConnectionPoolExhaustedException extends SQLException {
+
+  private final long waitMillis;
+
   public ConnectionPoolExhaustedException(String reason) {
+    this(reason, 0);
+  }
+
+  public ConnectionPoolExhaustedException(String reason, long waitMillis) {
     super(reason);
+    this.waitMillis = waitMillis;
+  }
+
+  /**
+   * Return how long in millis the caller waited for a connection before giving up.
+   */
+  public long waitMillis() {
+    return waitMillis;
   }
 }
@@ -340,6 +340,15 @@ public interface DataSourceBuilder {
    */
   DataSourceBuilder initialConnections(int initialConnections);
 
+  /**
+   * Set the number of connections created concurrently when starting the pool.
+   * <p>
+   * Creating the initial connections concurrently reduces the startup time when
+   * connecting is slow (for example with a remote TLS terminated database).
+   * Defaults to 1 which creates the connections one after another.
+   */
+  DataSourceBuilder initialConnectionParallelism(int initialConnectionParallelism);
+
   /**
    * Set the maximum number of connections the pool can reach. Defaults to 200 when not set.
    */
@@ -446,6 +455,18 @@ public interface DataSourceBuilder {
   @Deprecated(forRemoval = true)
   DataSourceBuilder setCaptureStackTrace(boolean captureStackTrace);
 
+  /**
+   * Set the rate at which stack traces are captured when captureStackTrace is true.
+   * <p>
+   * With a rate of N the stack trace is captured for 1 in N connections obtained
+   * (randomly sampled) reducing the overhead such that it can be left on in production.
+   * For connections not sampled that are held for longer than longHoldMillis the stack
+   * trace of the thread that obtained the connection is captured by the heartbeat once
+   * the hold crosses longHoldMillis and reported instead (as holderStackTrace).
+   * Defaults to 1 which captures the stack trace for every connection.
+   */
+  DataSourceBuilder stackTraceSampleRate(int stackTraceSampleRate);
+
   /**
    * Set the max size for reporting stack traces on busy connections.
    */
@@ -472,6 +493,67 @@ public interface DataSourceBuilder {
   @Deprecated(forRemoval = true)
   DataSourceBuilder setLeakTimeMinutes(int leakTimeMinutes);
 
+  /**
+   * Set the time in millis a connection can be held before it is suspected to have leaked.
+   * <p>
+   * When set the busy connections are checked on each heartbeat and a connection held
+   * for longer than this is reported once (per time it is obtained) via
+   * {@link DataSourcePoolListener#onLeakSuspected(ConnectionLeak)} and logged. Unlike
+   * leakTimeMinutes this does not require the pool to be reset. Defaults to 0 (off).
+   */
+  DataSourceBuilder leakDetectionMillis(int leakDetectionMillis);
+
+  /**
+   * Set to true to close (reclaim) connections that are suspected to have leaked.
+   * <p>
+   * The connection is removed from the pool and closed such that the capacity can be
+   * used by other threads. Use with care as the holding thread gets an error on
+   * further use of the connection. Defaults to false.
+   */
+  DataSourceBuilder leakReclaim(boolean leakReclaim);
+
+  /**
+   * Set to true to return connections to the pool when the application drops them without closing them.
+   * <p>
+   * The application is given a thin handle to the pooled connection that is tracked
+   * by a {@link java.lang.ref.Cleaner}. When the handle is garbage collected without
+   * having been closed the connection is rolled back and returned to the pool and
+   * this is logged as a leak. Statements and result sets obtained from the handle keep
+   * it reachable while the application references them. Defaults to false.
+   */
+  DataSourceBuilder reclaimUnreachable(boolean reclaimUnreachable);
+
+  /**
+   * Set to true to register a platform MBean for the pool (see {@link DataSourcePoolMXBean}).
+   * <p>
+   * The MBean exposes the pool status and prepared statement cache counters and
+   * operations to set the max size, take the pool offline/online, reset it and
+   * dump the busy connections. It is unregistered when the pool is shutdown.
+   * Defaults to false.
+   */
+  DataSourceBuilder registerMBean(boolean registerMBean);
+
+  /**
+   * Set the resolution in millis of the clock used for the pool timestamps.
+   * <p>
+   * When set the pool reads a millisecond time that is updated at this frequency
+   * by a clock thread (started with the heartbeat) rather than calling System.currentTimeMillis() when
+   * connections are obtained and returned. The last used, creation and trim times
+   * are then accurate to this resolution. This has no effect when the heartbeat is
+   * disabled. Defaults to 0 (use System.currentTimeMillis()).
+   */
+  DataSourceBuilder clockResolutionMillis(int clockResolutionMillis);
+
+  /**
+   * Set the eviction and admission policy of the PreparedStatement and CallableStatement caches.
+   * <p>
+   * With {@link StatementCachePolicy#TINY_LFU} a statement is only admitted to a full cache
+   * when it is used more frequently than the statement it would evict, such that a burst of
+   * one-off sql does not evict the frequently used statements. The statements not admitted
+   * are counted as rejections in the cache metrics. Defaults to {@link StatementCachePolicy#LRU}.
+   */
+  DataSourceBuilder statementCachePolicy(StatementCachePolicy statementCachePolicy);
+
   /**
    * Set the size of the PreparedStatement cache (per connection).
    * <p>
@@ -737,6 +819,79 @@ public interface DataSourceBuilder {
    */
   DataSourceBuilder validateOnHeartbeat(boolean validateOnHeartbeat);
 
+  /**
+   * Set to true to obtain and return connections using a lock free fast path.
+   * <p>
+   * Each thread keeps a small list of the connections it recently used and these
+   * are claimed without taking the pool lock. When no connection can be claimed
+   * this falls back to the normal (locked) path. This reduces lock contention
+   * when there are many cores concurrently using the pool.
+   */
+  DataSourceBuilder threadAffinity(boolean threadAffinity);
+
+  /**
+   * Set the number of connections reserved for {@link Priority#HIGH} borrowers.
+   * <p>
+   * NORMAL and LOW priority borrowers can not use the last reserved connections
+   * of the pool such that latency critical borrowers can obtain a connection
+   * when bulk work has otherwise drained the pool. Defaults to 0.
+   */
+  DataSourceBuilder reservedHighPriority(int reservedHighPriority);
+
+  /**
+   * Set to true to automatically adjust the effective maximum size of the pool.
+   * <p>
+   * When enabled the pool size is adjusted between min and max connections on
+   * each heartbeat based on demand (busy and waiting threads) and the observed
+   * acquire wait times. The pool grows when the acquire wait exceeds
+   * {@link #autoscaleTargetWaitMillis(int)} and shrinks when demand is low such
+   * that idle database connections are released. Requires the heartbeat to be
+   * enabled. Defaults to false.
+   */
+  DataSourceBuilder autoscale(boolean autoscale);
+
+  /**
+   * Set the target p99 acquire wait in millis used by the autoscaler. Defaults to 50.
+   */
+  DataSourceBuilder autoscaleTargetWaitMillis(int autoscaleTargetWaitMillis);
+
+  /**
+   * Set the minimum number of seconds between autoscaler changes to the pool size. Defaults to 30.
+   */
+  DataSourceBuilder autoscaleCooldownSecs(int autoscaleCooldownSecs);
+
+  /**
+   * Set the hold time in millis at or above which a connection hold is counted as a long hold.
+   * <p>
+   * The time from obtaining a connection to closing it is recorded and holds of at
+   * least this duration are counted in {@link PoolStatus#longHoldCount()}, without
+   * requiring captureStackTrace. Defaults to 1000. Set to 0 to not count long holds.
+   */
+  DataSourceBuilder longHoldMillis(int longHoldMillis);
+
+  /**
+   * Set to true to aggregate connection usage per call site.
+   * <p>
+   * A low overhead alternative to captureStackTrace. When a connection is obtained
+   * only the first {@link #callSiteFrames(int)} frames outside the skipped packages
+   * are captured (using StackWalker) and the borrow count, total hold time and max
+   * hold time are aggregated per call site. The statistics are obtained via
+   * {@link DataSourcePool#callSiteStatus(boolean)}. Defaults to false.
+   */
+  DataSourceBuilder callSiteTracking(boolean callSiteTracking);
+
+  /**
+   * Set the number of frames that identify a call site. Defaults to 2.
+   */
+  DataSourceBuilder callSiteFrames(int callSiteFrames);
+
+  /**
+   * Set package prefixes skipped when determining the call site (for example "io.ebean.").
+   * <p>
+   * Frames of the JDK packages (java., javax., jdk., sun.) are always skipped.
+   */
+  DataSourceBuilder callSiteSkipPackages(List<String> callSiteSkipPackages);
+
   /**
    * Load the settings from the properties with no prefix on the property names.
    *
@@ -813,6 +968,56 @@ public interface DataSourceBuilder {
      */
     boolean isValidateOnHeartbeat();
 
+    /**
+     * Return true if the lock free thread affinity fast path is used.
+     */
+    boolean isThreadAffinity();
+
+    /**
+     * Return the number of connections reserved for high priority borrowers.
+     */
+    int getReservedHighPriority();
+
+    /**
+     * Return true if the pool size is automatically adjusted based on demand.
+     */
+    boolean isAutoscale();
+
+    /**
+     * Return the target p99 acquire wait in millis used by the autoscaler.
+     */
+    int getAutoscaleTargetWaitMillis();
+
+    /**
+     * Return the minimum number of seconds between autoscaler changes to the pool size.
+     */
+    int getAutoscaleCooldownSecs();
+
+    /**
+     * Return the hold time in millis at or above which a connection hold is counted as a long hold.
+     */
+    int getLongHoldMillis();
+
+    /**
+     * Return true if connection usage is aggregated per call site.
+     */
+    boolean isCallSiteTracking();
+
+    /**
+     * Return the number of frames that identify a call site.
+     */
+    int getCallSiteFrames();
+
+    /**
+     * Return the package prefixes skipped when determining the call site.
+     */
+    List<String> getCallSiteSkipPackages();
+
+    /**
+     * Return the number of connections created concurrently when starting the pool.
+     */
+    int getInitialConnectionParallelism();
+
     /**
      * Return the connection properties including credentials and custom parameters.
      */
@@ -972,11 +1177,46 @@ public interface DataSourceBuilder {
      */
     int getMaxStackTraceSize();
 
+    /**
+     * Return the rate (1 in N) at which stack traces are captured when captureStackTrace is true.
+     */
+    int getStackTraceSampleRate();
+
     /**
      * Return the time in minutes after which a connection could be considered to have leaked.
      */
     int getLeakTimeMinutes();
 
+    /**
+     * Return the time in millis a connection can be held before it is suspected to have leaked.
+     */
+    int getLeakDetectionMillis();
+
+    /**
+     * Return true if connections suspected to have leaked are closed.
+     */
+    boolean isLeakReclaim();
+
+    /**
+     * Return true if connections dropped by the application without being closed are returned to the pool.
+     */
+    boolean isReclaimUnreachable();
+
+    /**
+     * Return true if a platform MBean is registered for the pool.
+     */
+    boolean isRegisterMBean();
+
+    /**
+     * Return the resolution in millis of the clock used for the pool timestamps (0 for System.currentTimeMillis()).
+     */
+    int getClockResolutionMillis();
+
+    /**
+     * Return the eviction and admission policy of the statement caches.
+     */
+    StatementCachePolicy getStatementCachePolicy();
+
     /**
      * Return the size of the PreparedStatement cache (per connection).
      */
@@ -89,6 +89,23 @@ public class DataSourceConfig implements DataSourceBuilder.Settings {
   private boolean shutdownOnJvmExit;
   private boolean validateOnHeartbeat = !System.getenv().containsKey("LAMBDA_TASK_ROOT");
   private boolean enforceCleanClose;
+  private boolean threadAffinity;
+  private int reservedHighPriority;
+  private int initialConnectionParallelism = 1;
+  private boolean autoscale;
+  private int autoscaleTargetWaitMillis = 50;
+  private int autoscaleCooldownSecs = 30;
+  private int longHoldMillis = 1000;
+  private boolean callSiteTracking;
+  private int callSiteFrames = 2;
+  private List<String> callSiteSkipPackages;
+  private int stackTraceSampleRate = 1;
+  private int leakDetectionMillis;
+  private boolean leakReclaim;
+  private boolean reclaimUnreachable;
+  private boolean registerMBean;
+  private int clockResolutionMillis;
+  private StatementCachePolicy statementCachePolicy = StatementCachePolicy.LRU;
 
   @Override
   public Settings settings() {
@@ -155,6 +172,25 @@ public class DataSourceConfig implements DataSourceBuilder.Settings {
     copy.alert = alert;
     copy.listener = listener;
     copy.enforceCleanClose = enforceCleanClose;
+    copy.threadAffinity = threadAffinity;
+    copy.reservedHighPriority = reservedHighPriority;
+    copy.initialConnectionParallelism = initialConnectionParallelism;
+    copy.autoscale = autoscale;
+    copy.autoscaleTargetWaitMillis = autoscaleTargetWaitMillis;
+    copy.autoscaleCooldownSecs = autoscaleCooldownSecs;
+    copy.longHoldMillis = longHoldMillis;
+    copy.callSiteTracking = callSiteTracking;
+    copy.callSiteFrames = callSiteFrames;
+    copy.stackTraceSampleRate = stackTraceSampleRate;
+    copy.leakDetectionMillis = leakDetectionMillis;
+    copy.leakReclaim = leakReclaim;
+    copy.reclaimUnreachable = reclaimUnreachable;
+    copy.registerMBean = registerMBean;
+    copy.clockResolutionMillis = clockResolutionMillis;
+    copy.statementCachePolicy = statementCachePolicy;
+    if (callSiteSkipPackages != null) {
+      copy.callSiteSkipPackages = new ArrayList<>(callSiteSkipPackages);
+    }
     return copy;
   }
 
@@ -786,6 +822,193 @@ public class DataSourceConfig implements DataSourceBuilder.Settings {
     return this;
   }
 
+  @Override
+  public boolean isThreadAffinity() {
+    return threadAffinity;
+  }
+
+  @Override
+  public DataSourceConfig threadAffinity(boolean threadAffinity) {
+    this.threadAffinity = threadAffinity;
+    return this;
+  }
+
+  @Override
+  public int getReservedHighPriority() {
+    return reservedHighPriority;
+  }
+
+  @Override
+  public DataSourceConfig reservedHighPriority(int reservedHighPriority) {
+    this.reservedHighPriority = reservedHighPriority;
+    return this;
+  }
+
+  @Override
+  public int getInitialConnectionParallelism() {
+    return initialConnectionParallelism;
+  }
+
+  @Override
+  public DataSourceConfig initialConnectionParallelism(int initialConnectionParallelism) {
+    this.initialConnectionParallelism = initialConnectionParallelism;
+    return this;
+  }
+
+  @Override
+  public boolean isAutoscale() {
+    return autoscale;
+  }
+
+  @Override
+  public DataSourceConfig autoscale(boolean autoscale) {
+    this.autoscale = autoscale;
+    return this;
+  }
+
+  @Override
+  public int getAutoscaleTargetWaitMillis() {
+    return autoscaleTargetWaitMillis;
+  }
+
+  @Override
+  public DataSourceConfig autoscaleTargetWaitMillis(int autoscaleTargetWaitMillis) {
+    this.autoscaleTargetWaitMillis = autoscaleTargetWaitMillis;
+    return this;
+  }
+
+  @Override
+  public int getAutoscaleCooldownSecs() {
+    return autoscaleCooldownSecs;
+  }
+
+  @Override
+  public DataSourceConfig autoscaleCooldownSecs(int autoscaleCooldownSecs) {
+    this.autoscaleCooldownSecs = autoscaleCooldownSecs;
+    return this;
+  }
+
+  @Override
+  public int getLongHoldMillis() {
+    return longHoldMillis;
+  }
+
+  @Override
+  public DataSourceConfig longHoldMillis(int longHoldMillis) {
+    this.longHoldMillis = longHoldMillis;
+    return this;
+  }
+
+  @Override
+  public boolean isCallSiteTracking() {
+    return callSiteTracking;
+  }
+
+  @Override
+  public DataSourceConfig callSiteTracking(boolean callSiteTracking) {
+    this.callSiteTracking = callSiteTracking;
+    return this;
+  }
+
+  @Override
+  public int getCallSiteFrames() {
+    return callSiteFrames;
+  }
+
+  @Override
+  public DataSourceConfig callSiteFrames(int callSiteFrames) {
+    this.callSiteFrames = callSiteFrames;
+    return this;
+  }
+
+  @Override
+  public List<String> getCallSiteSkipPackages() {
+    return callSiteSkipPackages;
+  }
+
+  @Override
+  public DataSourceConfig callSiteSkipPackages(List<String> callSiteSkipPackages) {
+    this.callSiteSkipPackages = callSiteSkipPackages;
+    return this;
+  }
+
+  @Override
+  public int getStackTraceSampleRate() {
+    return stackTraceSampleRate;
+  }
+
+  @Override
+  public DataSourceConfig stackTraceSampleRate(int stackTraceSampleRate) {
+    this.stackTraceSampleRate = stackTraceSampleRate;
+    return this;
+  }
+
+  @Override
+  public int getLeakDetectionMillis() {
+    return leakDetectionMillis;
+  }
+
+  @Override
+  public DataSourceConfig leakDetectionMillis(int leakDetectionMillis) {
+    this.leakDetectionMillis = leakDetectionMillis;
+    return this;
+  }
+
+  @Override
+  public boolean isLeakReclaim() {
+    return leakReclaim;
+  }
+
+  @Override
+  public DataSourceConfig leakReclaim(boolean leakReclaim) {
+    this.leakReclaim = leakReclaim;
+    return this;
+  }
+
+  @Override
+  public boolean isReclaimUnreachable() {
+    return reclaimUnreachable;
+  }
+
+  @Override
+  public DataSourceConfig reclaimUnreachable(boolean reclaimUnreachable) {
+    this.reclaimUnreachable = reclaimUnreachable;
+    return this;
+  }
+
+  @Override
+  public boolean isRegisterMBean() {
+    return registerMBean;
+  }
+
+  @Override
+  public DataSourceConfig registerMBean(boolean registerMBean) {
+    this.registerMBean = registerMBean;
+    return this;
+  }
+
+  @Override
+  public int getClockResolutionMillis() {
+    return clockResolutionMillis;
+  }
+
+  @Override
+  public DataSourceConfig clockResolutionMillis(int clockResolutionMillis) {
+    this.clockResolutionMillis = clockResolutionMillis;
+    return this;
+  }
+
+  @Override
+  public StatementCachePolicy getStatementCachePolicy() {
+    return statementCachePolicy;
+  }
+
+  @Override
+  public DataSourceConfig statementCachePolicy(StatementCachePolicy statementCachePolicy) {
+    this.statementCachePolicy = statementCachePolicy;
+    return this;
+  }
+
   @Override
   public DataSourceConfig load(Properties properties) {
     return load(properties, null);
@@ -843,6 +1066,32 @@ public class DataSourceConfig implements DataSourceBuilder.Settings {
     shutdownOnJvmExit = properties.getBoolean("shutdownOnJvmExit", shutdownOnJvmExit);
     validateOnHeartbeat = properties.getBoolean("validateOnHeartbeat", validateOnHeartbeat);
     enforceCleanClose = properties.getBoolean("enforceCleanClose", enforceCleanClose);
+    threadAffinity = properties.getBoolean("threadAffinity", threadAffinity);
+    reservedHighPriority = properties.getInt("reservedHighPriority", reservedHighPriority);
+    initialConnectionParallelism = properties.getInt("initialConnectionParallelism", initialConnectionParallelism);
+    autoscale = properties.getBoolean("autoscale", autoscale);
+    autoscaleTargetWaitMillis = properties.getInt("autoscaleTargetWaitMillis", autoscaleTargetWaitMillis);
+    autoscaleCooldownSecs = properties.getInt("autoscaleCooldownSecs", autoscaleCooldownSecs);
+    longHoldMillis = properties.getInt("longHoldMillis", longHoldMillis);
+    callSiteTracking = properties.getBoolean("callSiteTracking", callSiteTracking);
+    callSiteFrames = properties.getInt("callSiteFrames", callSiteFrames);
+    stackTraceSampleRate = properties.getInt("stackTraceSampleRate", stackTraceSampleRate);
+    leakDetectionMillis = properties.getInt("leakDetectionMillis", leakDetectionMillis);
+    leakReclaim = properties.getBoolean("leakReclaim", leakReclaim);
+    reclaimUnreachable = properties.getBoolean("reclaimUnreachable", reclaimUnreachable);
+    registerMBean = properties.getBoolean("registerMBean", registerMBean);
+    clockResolutionMillis = properties.getInt("clockResolutionMillis", clockResolutionMillis);
+    String cachePolicy = properties.get("statementCachePolicy", statementCachePolicy.name());
+    statementCachePolicy = StatementCachePolicy.valueOf(cachePolicy.trim().toUpperCase());
+    String skipPackages = properties.get("callSiteSkipPackages", null);
+    if (skipPackages != null && !skipPackages.isEmpty()) {
+      callSiteSkipPackages = new ArrayList<>();
+      for (String skipPackage : skipPackages.split(",")) {
+        if (!skipPackage.isBlank()) {
+          callSiteSkipPackages.add(skipPackage.trim());
+        }
+      }
+    }
 
 
     String isoLevel = properties.get("isolationLevel", _isolationLevel(isolationLevel));
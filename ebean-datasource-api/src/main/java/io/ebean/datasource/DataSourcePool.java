@@ -1,7 +1,12 @@
 package io.ebean.datasource;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * DataSource pool API.
@@ -52,6 +57,66 @@ public interface DataSourcePool extends DataSource {
    */
   int size();
 
+  /**
+   * Return a pooled connection for a borrower of the given priority.
+   * <p>
+   * When the pool is at its maximum size waiting borrowers are served in priority
+   * order. Connections reserved via {@link DataSourceBuilder#reservedHighPriority(int)}
+   * are only used by {@link Priority#HIGH} borrowers. {@link #getConnection()} uses
+   * {@link Priority#NORMAL}.
+   *
+   * @throws UnsupportedOperationException when not supported by the pool
+   */
+  default Connection getConnection(Priority priority) throws SQLException {
+    throw new UnsupportedOperationException("getConnection(Priority) not supported by this pool");
+  }
+
+  /**
+   * Return a pooled connection waiting at most maxWait when the pool is at its maximum size.
+   * <p>
+   * This is used instead of the pool wait timeout when the caller has its own deadline,
+   * such that it can give up early rather than piling onto an exhausted pool.
+   *
+   * @param maxWait The maximum time to wait for a connection (can be zero)
+   * @throws ConnectionPoolExhaustedException when no connection was available within maxWait
+   * @throws UnsupportedOperationException when not supported by the pool
+   */
+  default Connection getConnection(Duration maxWait) throws SQLException {
+    throw new UnsupportedOperationException("getConnection(Duration) not supported by this pool");
+  }
+
+  /**
+   * Obtain a connection asynchronously using the pool wait timeout.
+   * <p>
+   * The future is completed using the common ForkJoinPool. Use
+   * {@link #getConnectionAsync(Duration, Executor)} to supply an executor
+   * suited to connecting to the database when the pool needs to grow.
+   *
+   * @throws UnsupportedOperationException when not supported by the pool
+   */
+  default CompletableFuture<Connection> getConnectionAsync() {
+    throw new UnsupportedOperationException("getConnectionAsync() not supported by this pool");
+  }
+
+  /**
+   * Obtain a connection asynchronously.
+   * <p>
+   * When the pool is at its maximum size the request is queued (without blocking
+   * a thread) and the future is completed when a connection is returned to the pool.
+   * If no connection is available within the timeout the future is completed
+   * exceptionally with a {@link ConnectionPoolExhaustedException}.
+   * <p>
+   * Cancelling the future releases any connection subsequently handed to it
+   * back to the pool.
+   *
+   * @param timeout  The maximum time to wait for a connection
+   * @param executor The executor used to complete the future
+   * @throws UnsupportedOperationException when not supported by the pool
+   */
+  default CompletableFuture<Connection> getConnectionAsync(Duration timeout, Executor executor) {
+    throw new UnsupportedOperationException("getConnectionAsync(Duration, Executor) not supported by this pool");
+  }
+
   /**
    * Return true if the pool defaults to using autocommit.
    */
@@ -100,6 +165,16 @@ public interface DataSourcePool extends DataSource {
    */
   PoolStatus status(boolean reset);
 
+  /**
+   * Return the connection usage statistics per call site ordered by total hold time descending.
+   * <p>
+   * This is empty unless {@link DataSourceBuilder#callSiteTracking(boolean)} is enabled.
+   * With reset true, the counters are reset.
+   */
+  default List<CallSiteStatus> callSiteStatus(boolean reset) {
+    return List.of();
+  }
+
   /**
    * Returns the reason, why the dataSource is down.
    */
@@ -24,5 +24,12 @@ public interface DataSourcePoolListener {
    */
   default void onBeforeReturnConnection(Connection connection) {}
 
+  /**
+   * Called when a connection has been held for longer than leakDetectionMillis.
+   * <p>
+   * This is called by the heartbeat (not the thread holding the connection) and only
+   * once for each time a connection is obtained.
+   */
+  default void onLeakSuspected(ConnectionLeak leak) {}
 
 }
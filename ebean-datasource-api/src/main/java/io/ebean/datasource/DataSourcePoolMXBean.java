@@ -0,0 +1,183 @@
+package io.ebean.datasource;
+
+import java.sql.SQLException;
+
+/**
+ * JMX management interface of a DataSourcePool.
+ * <p>
+ * Registered as a platform MBean with the name {@code io.ebean.datasource:type=DataSourcePool,name=<pool name>}
+ * when registerMBean is true. Reading the attributes does not take the pool lock and
+ * does not reset the statistics.
+ */
+public interface DataSourcePoolMXBean {
+
+  /**
+   * Return the name of the pool.
+   */
+  String getName();
+
+  /**
+   * Return true if the pool is online.
+   */
+  boolean isOnline();
+
+  /**
+   * Return the min pool size.
+   */
+  int getMinSize();
+
+  /**
+   * Return the (effective) max pool size.
+   */
+  int getMaxSize();
+
+  /**
+   * Set the max pool size.
+   */
+  void setMaxSize(int maxSize);
+
+  /**
+   * Return the number of free connections.
+   */
+  int getFree();
+
+  /**
+   * Return the number of busy connections.
+   */
+  int getBusy();
+
+  /**
+   * Return the number of threads waiting for a connection.
+   */
+  int getWaiting();
+
+  /**
+   * Return the highest number of busy connections.
+   */
+  int getHighWaterMark();
+
+  /**
+   * Return the number of times a thread had to wait for a connection.
+   */
+  int getWaitCount();
+
+  /**
+   * Return the number of times a connection was obtained.
+   */
+  int getHitCount();
+
+  /**
+   * Return the total acquire time in micros.
+   */
+  long getTotalAcquireMicros();
+
+  /**
+   * Return the total time threads waited for a connection in micros.
+   */
+  long getTotalWaitMicros();
+
+  /**
+   * Return the max acquire time in micros.
+   */
+  long getMaxAcquireMicros();
+
+  /**
+   * Return the mean acquire time in nanos.
+   */
+  long getMeanAcquireNanos();
+
+  /**
+   * Return the 50th percentile acquire time in micros.
+   */
+  long getP50AcquireMicros();
+
+  /**
+   * Return the 90th percentile acquire time in micros.
+   */
+  long getP90AcquireMicros();
+
+  /**
+   * Return the 99th percentile acquire time in micros.
+   */
+  long getP99AcquireMicros();
+
+  /**
+   * Return the 99.9th percentile acquire time in micros.
+   */
+  long getP999AcquireMicros();
+
+  /**
+   * Return the 99th percentile connection hold time in micros.
+   */
+  long getP99HoldMicros();
+
+  /**
+   * Return the max connection hold time in micros.
+   */
+  long getMaxHoldMicros();
+
+  /**
+   * Return the number of connection holds of at least longHoldMillis.
+   */
+  long getLongHoldCount();
+
+  /**
+   * Return the prepared statement cache hits (of all the connections).
+   */
+  long getPscHit();
+
+  /**
+   * Return the prepared statement cache misses (of all the connections).
+   */
+  long getPscMiss();
+
+  /**
+   * Return the prepared statement cache removals (of all the connections).
+   */
+  long getPscRem();
+
+  /**
+   * Return the prepared statement cache admission rejections (of all the connections).
+   */
+  long getPscRej();
+
+  /**
+   * Return the callable statement cache hits (of all the connections).
+   */
+  long getCscHit();
+
+  /**
+   * Return the callable statement cache misses (of all the connections).
+   */
+  long getCscMiss();
+
+  /**
+   * Return the callable statement cache removals (of all the connections).
+   */
+  long getCscRem();
+
+  /**
+   * Return the callable statement cache admission rejections (of all the connections).
+   */
+  long getCscRej();
+
+  /**
+   * Take the pool offline closing the free connections.
+   */
+  void offline();
+
+  /**
+   * Bring the pool back online.
+   */
+  void online() throws SQLException;
+
+  /**
+   * Reset the pool closing the free connections (busy connections are closed when returned).
+   */
+  void reset();
+
+  /**
+   * Return a description of the busy connections.
+   */
+  String dumpBusyConnections();
+}
@@ -1,5 +1,8 @@
 package io.ebean.datasource;
 
+import java.util.Collections;
+import java.util.SortedMap;
+
 /**
  * Current status of the DataSourcePool.
  */
@@ -47,6 +50,20 @@ public interface PoolStatus {
    */
   int hitCount();
 
+  /**
+   * Return the hit count for borrowers of the given priority.
+   */
+  default int hitCount(Priority priority) {
+    return 0;
+  }
+
+  /**
+   * Return the number of times borrowers of the given priority had to wait for a connection.
+   */
+  default int waitCount(Priority priority) {
+    return 0;
+  }
+
   /**
    * Return the total time acquiring a connection from the pool.
    */
@@ -70,4 +87,87 @@ public interface PoolStatus {
    * This should be in the ballpark of 150 nanos.
    */
   long meanAcquireNanos();
+
+  /**
+   * Return the acquire time in micros at the given percentile (0 to 100).
+   * <p>
+   * Acquire times are recorded in a histogram with a relative error of at most 1/16.
+   */
+  default long acquireMicros(double percentile) {
+    return 0;
+  }
+
+  /**
+   * Return the median acquire time in micros.
+   */
+  default long p50AcquireMicros() {
+    return acquireMicros(50);
+  }
+
+  /**
+   * Return the 90th percentile acquire time in micros.
+   */
+  default long p90AcquireMicros() {
+    return acquireMicros(90);
+  }
+
+  /**
+   * Return the 99th percentile acquire time in micros.
+   */
+  default long p99AcquireMicros() {
+    return acquireMicros(99);
+  }
+
+  /**
+   * Return the 99.9th percentile acquire time in micros.
+   */
+  default long p999AcquireMicros() {
+    return acquireMicros(99.9);
+  }
+
+  /**
+   * Return the acquire time histogram as the number of acquires per bucket keyed
+   * by the bucket upper bound in nanos. Only buckets with acquires are included.
+   */
+  default SortedMap<Long, Long> acquireHistogram() {
+    return Collections.emptySortedMap();
+  }
+
+  /**
+   * Return the hold time in micros at the given percentile (0 to 100).
+   * <p>
+   * The hold time is from obtaining a connection to closing it (returning it to the pool).
+   */
+  default long holdMicros(double percentile) {
+    return 0;
+  }
+
+  /**
+   * Return the 99th percentile hold time in micros.
+   */
+  default long p99HoldMicros() {
+    return holdMicros(99);
+  }
+
+  /**
+   * Return the max hold time in micros.
+   */
+  default long maxHoldMicros() {
+    return 0;
+  }
+
+  /**
+   * Return the number of connection holds of at least longHoldMillis.
+   */
+  default long longHoldCount() {
+    return 0;
+  }
+
+  /**
+   * Return the hold time histogram as the number of holds per bucket keyed
+   * by the bucket upper bound in nanos. Only buckets with holds are included.
+   */
+  default SortedMap<Long, Long> holdHistogram() {
+    return Collections.emptySortedMap();
+  }
 }
@@ -0,0 +1,27 @@
+package io.ebean.datasource;
+
+/**
+ * The priority of a borrower obtaining a connection from the pool.
+ * <p>
+ * When the pool is at its maximum size waiting borrowers are served in priority
+ * order (and in FIFO order within the same priority). Connections reserved via
+ * {@link DataSourceBuilder#reservedHighPriority(int)} are only used by HIGH
+ * priority borrowers.
+ */
+public enum Priority {
+
+  /**
+   * Latency critical borrowers that can use the reserved connections.
+   */
+  HIGH,
+
+  /**
+   * The default priority.
+   */
+  NORMAL,
+
+  /**
+   * Bulk or batch borrowers served after all other waiting borrowers.
+   */
+  LOW
+}
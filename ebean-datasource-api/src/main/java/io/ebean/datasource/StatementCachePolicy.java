@@ -0,0 +1,21 @@
+package io.ebean.datasource;
+
+/**
+ * The eviction and admission policy of the PreparedStatement and CallableStatement caches.
+ */
+public enum StatementCachePolicy {
+
+  /**
+   * Least recently used statements are evicted and every statement is admitted (the default).
+   */
+  LRU,
+
+  /**
+   * Window TinyLFU where a statement leaving a small LRU window is only admitted to the main
+   * cache when it has been used more frequently than the statement it would evict.
+   * <p>
+   * The usage frequency is estimated by a compact count-min sketch. This keeps a burst of
+   * one-off sql (for example with inlined IN lists) from evicting the frequently used statements.
+   */
+  TINY_LFU
+}
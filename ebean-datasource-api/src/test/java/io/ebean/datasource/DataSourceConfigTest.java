@@ -270,6 +270,23 @@ public class DataSourceConfigTest {
     assertThat(config.isShutdownOnJvmExit()).isTrue();
     assertThat(config.isValidateOnHeartbeat()).isTrue();
     assertThat(config.isValidateOnHeartbeat()).isTrue();
+    assertThat(config.isThreadAffinity()).isTrue();
+    assertThat(config.getReservedHighPriority()).isEqualTo(2);
+    assertThat(config.getInitialConnectionParallelism()).isEqualTo(4);
+    assertThat(config.isAutoscale()).isTrue();
+    assertThat(config.getAutoscaleTargetWaitMillis()).isEqualTo(20);
+    assertThat(config.getAutoscaleCooldownSecs()).isEqualTo(10);
+    assertThat(config.getLongHoldMillis()).isEqualTo(250);
+    assertThat(config.isCallSiteTracking()).isTrue();
+    assertThat(config.getCallSiteFrames()).isEqualTo(3);
+    assertThat(config.getStackTraceSampleRate()).isEqualTo(1000);
+    assertThat(config.getLeakDetectionMillis()).isEqualTo(60000);
+    assertThat(config.isLeakReclaim()).isTrue();
+    assertThat(config.isReclaimUnreachable()).isTrue();
+    assertThat(config.isRegisterMBean()).isTrue();
+    assertThat(config.getClockResolutionMillis()).isEqualTo(10);
+    assertThat(config.getStatementCachePolicy()).isEqualTo(StatementCachePolicy.TINY_LFU);
+    assertThat(config.getCallSiteSkipPackages()).containsExactly("io.ebean.", "org.example.dao");
   }
 
   @Test
@@ -281,6 +298,23 @@ public class DataSourceConfigTest {
     assertConfigValues(config);
     assertThat(config.isShutdownOnJvmExit()).isFalse();
     assertThat(config.isValidateOnHeartbeat()).isTrue();
+    assertThat(config.isThreadAffinity()).isFalse();
+    assertThat(config.getReservedHighPriority()).isEqualTo(0);
+    assertThat(config.getInitialConnectionParallelism()).isEqualTo(1);
+    assertThat(config.isAutoscale()).isFalse();
+    assertThat(config.getAutoscaleTargetWaitMillis()).isEqualTo(50);
+    assertThat(config.getAutoscaleCooldownSecs()).isEqualTo(30);
+    assertThat(config.getLongHoldMillis()).isEqualTo(1000);
+    assertThat(config.isCallSiteTracking()).isFalse();
+    assertThat(config.getCallSiteFrames()).isEqualTo(2);
+    assertThat(config.getStackTraceSampleRate()).isEqualTo(1);
+    assertThat(config.getLeakDetectionMillis()).isEqualTo(0);
+    assertThat(config.isLeakReclaim()).isFalse();
+    assertThat(config.isReclaimUnreachable()).isFalse();
+    assertThat(config.isRegisterMBean()).isFalse();
+    assertThat(config.getClockResolutionMillis()).isEqualTo(0);
+    assertThat(config.getStatementCachePolicy()).isEqualTo(StatementCachePolicy.LRU);
+    assertThat(config.getCallSiteSkipPackages()).isNull();
   }
 
   @Test
@@ -0,0 +1,54 @@
+package io.ebean.datasource.pool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Add and remove on the free connection buffer.
+ * <p>
+ * Run with the gc profiler to check that add and remove do not allocate
+ * (gc.alloc.rate.norm of 0 bytes per operation):
+ * <pre>{@code
+ *
+ *   mvn package -Pjmh -pl ebean-datasource-jmh -am
+ *   java -jar ebean-datasource-jmh/target/benchmarks.jar FreeConnectionBuffer -prof gc
+ *
+ * }</pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FreeConnectionBufferBenchmark {
+
+  private FreeConnectionBuffer buffer;
+  private PooledConnection p0;
+  private PooledConnection p1;
+
+  @Setup
+  public void setup() {
+    buffer = new FreeConnectionBuffer(4);
+    p0 = new PooledConnection("0");
+    p1 = new PooledConnection("1");
+  }
+
+  @Benchmark
+  public PooledConnection addRemove() {
+    buffer.add(p0);
+    buffer.add(p1);
+    buffer.remove();
+    return buffer.remove();
+  }
+}
@@ -0,0 +1,116 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.Priority;
+
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request for a connection that completes a future rather than blocking a thread.
+ * <p>
+ * When signalled (under the queue lock) the waiter is only recorded by the queue.
+ * It is submitted to the executor after the queue lock is released such that
+ * stale validation, connect and any dependent stages do not run while holding
+ * the queue lock (even with a direct or caller runs executor).
+ */
+final class AsyncConnectionWaiter extends ConnectionWaiter {
+
+  private final PooledConnectionQueue queue;
+  private final CompletableFuture<Connection> future;
+  private final Executor executor;
+  private final Thread holder;
+  private final StackTraceElement[] stackTrace;
+  private final CallSite callSite;
+  private CompletableFuture<Void> timeout;
+
+  AsyncConnectionWaiter(PooledConnectionQueue queue, long start, long timeoutNanos, Executor executor, Thread holder, StackTraceElement[] stackTrace, CallSite callSite) {
+    super(start, start + timeoutNanos, Priority.NORMAL);
+    this.queue = queue;
+    this.future = new CompletableFuture<>();
+    this.executor = executor;
+    this.holder = holder;
+    this.stackTrace = stackTrace;
+    this.callSite = callSite;
+  }
+
+  @Override
+  void signal() {
+    queue.signalled(this);
+  }
+
+  /**
+   * Submit the signalled waiter to the executor (called outside the queue lock).
+   */
+  void submit() {
+    try {
+      executor.execute(() -> queue.completeAsync(this));
+    } catch (RejectedExecutionException e) {
+      queue.rejectAsync(this, e);
+    }
+  }
+
+  @Override
+  boolean isCancelled() {
+    return future.isDone();
+  }
+
+  CompletableFuture<Connection> future() {
+    return future;
+  }
+
+  Thread holder() {
+    return holder;
+  }
+
+  StackTraceElement[] stackTrace() {
+    return stackTrace;
+  }
+
+  CallSite callSite() {
+    return callSite;
+  }
+
+  /**
+   * Schedule the timeout to run on the executor at the deadline.
+   * <p>
+   * A waiter is queued again when the connection it was handed is stale. The
+   * timeout is then scheduled again if it has already fired (running at once
+   * when the deadline has passed) such that the future always completes.
+   * <p>
+   * The scheduled timeout is cancelled when the future completes such that it
+   * does not keep the waiter (and its connection) reachable until the deadline.
+   * When the future is cancelled by the caller the waiter is also removed from its
+   * lane such that it is not counted as waiting until a later dispatch skips it.
+   */
+  void scheduleTimeout(Runnable onTimeout) {
+    if (timeout != null && !timeout.isDone()) {
+      // the pending timeout also covers the waiter queued again
+      return;
+    }
+    final CompletableFuture<Void> timer = new CompletableFuture<Void>()
+      .completeOnTimeout(null, deadline() - System.nanoTime(), TimeUnit.NANOSECONDS);
+    timer.thenRun(() -> runTimeout(onTimeout));
+    future.whenComplete((connection, e) -> {
+      timer.cancel(false);
+      if (future.isCancelled()) {
+        queue.cancelAsync(this);
+      }
+    });
+    timeout = timer;
+  }
+
+  /**
+   * Run the timeout on the executor or, if the executor rejects it, on the
+   * timer thread such that the waiter is not left queued forever.
+   */
+  private void runTimeout(Runnable onTimeout) {
+    try {
+      executor.execute(onTimeout);
+    } catch (RejectedExecutionException e) {
+      onTimeout.run();
+    }
+  }
+}
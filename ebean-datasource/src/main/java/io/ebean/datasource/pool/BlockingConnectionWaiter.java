@@ -0,0 +1,42 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.Priority;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread that parks (outside the queue lock) waiting for a connection.
+ */
+final class BlockingConnectionWaiter extends ConnectionWaiter {
+
+  private final Thread thread;
+
+  BlockingConnectionWaiter(long start, long deadline, Priority priority) {
+    super(start, deadline, priority);
+    this.thread = Thread.currentThread();
+  }
+
+  @Override
+  void signal() {
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Park until given a connection or slot, the deadline passes or the thread is interrupted.
+   *
+   * @return true if the thread was interrupted
+   */
+  boolean await() {
+    while (isWaiting()) {
+      final long remaining = deadline() - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      LockSupport.parkNanos(this, remaining);
+      if (Thread.interrupted()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
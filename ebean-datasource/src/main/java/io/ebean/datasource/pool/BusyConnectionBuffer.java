@@ -1,6 +1,8 @@
 package io.ebean.datasource.pool;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * A buffer especially designed for Busy PooledConnections.
@@ -9,12 +11,21 @@ import java.util.Arrays;
  * <p>
  * It has a set of 'slots' and PooledConnections know which slot they went into
  * and this allows for fast addition and removal (by slotId without looping).
- * The capacity will increase on demand by the 'growBy' amount.
+ * The empty slots are tracked in a bitmap such that finding the next empty slot
+ * checks 64 slots at a time rather than scanning the slots.
+ * The capacity will increase on demand by the 'growBy' amount and can be reduced
+ * in which case busy connections above the capacity keep their slot until removed.
  */
 final class BusyConnectionBuffer {
 
   private PooledConnection[] slots;
+  /**
+   * Bit set for each empty slot below the capacity.
+   */
+  private long[] empty;
   private final int growBy;
+  private int capacity;
+  private int emptyCount;
   private int size;
   private int pos = -1;
 
@@ -26,19 +37,45 @@ final class BusyConnectionBuffer {
    * @param growBy   the fixed amount to grow the buffer by.
    */
   BusyConnectionBuffer(int capacity, int growBy) {
-    this.slots = new PooledConnection[capacity];
+    this.slots = new PooledConnection[0];
+    this.empty = new long[0];
     this.growBy = growBy;
+    setCapacity(capacity);
   }
 
   /**
-   * We can only grow (not shrink) the capacity.
+   * Set the capacity growing or shrinking the buffer.
    */
   void setCapacity(int newCapacity) {
     if (newCapacity > slots.length) {
-      PooledConnection[] current = this.slots;
-      this.slots = new PooledConnection[newCapacity];
-      System.arraycopy(current, 0, this.slots, 0, current.length);
+      slots = Arrays.copyOf(slots, newCapacity);
+      empty = Arrays.copyOf(empty, words(newCapacity));
+    }
+    if (newCapacity > capacity) {
+      for (int i = capacity; i < newCapacity; i++) {
+        if (slots[i] == null) {
+          markEmpty(i);
+        }
+      }
+    } else if (newCapacity < capacity) {
+      for (int i = newCapacity; i < capacity; i++) {
+        if (isEmpty(i)) {
+          empty[i >>> 6] &= ~(1L << i);
+          emptyCount--;
+        }
+      }
+      // release the slots above the capacity that are no longer used
+      int length = slots.length;
+      while (length > newCapacity && slots[length - 1] == null) {
+        length--;
+      }
+      slots = Arrays.copyOf(slots, length);
+      empty = Arrays.copyOf(empty, words(length));
+      if (pos >= newCapacity) {
+        pos = -1;
+      }
     }
+    capacity = newCapacity;
   }
 
   @Override
@@ -47,7 +84,7 @@ final class BusyConnectionBuffer {
   }
 
   int capacity() {
-    return slots.length;
+    return capacity;
   }
 
   int size() {
@@ -59,11 +96,13 @@ final class BusyConnectionBuffer {
   }
 
   int add(PooledConnection pc) {
-    if (size == slots.length) {
-      // grow the capacity
-      setCapacity(slots.length + growBy);
+    while (emptyCount == 0) {
+      // grow the capacity, busy connections above a reduced capacity can still hold these slots
+      setCapacity(capacity + growBy);
     }
     int slot = nextEmptySlot();
+    empty[slot >>> 6] &= ~(1L << slot);
+    emptyCount--;
     pc.setSlotId(slot);
     slots[slot] = pc;
     return ++size;
@@ -71,21 +110,20 @@ final class BusyConnectionBuffer {
 
   boolean remove(PooledConnection pc) {
     int slotId = pc.slotId();
-    if (slots[slotId] != pc) {
-      PooledConnection heldBy = slots[slotId];
+    if (slotId >= slots.length || slots[slotId] != pc) {
+      PooledConnection heldBy = slotId < slots.length ? slots[slotId] : null;
       Log.warn("Failed to remove from slot[{0}] PooledConnection[{1}] - HeldBy[{2}]", pc.slotId(), pc, heldBy);
       return false;
     }
-    slots[slotId] = null;
-    --size;
+    clearSlot(slotId);
     return true;
   }
 
   /**
-   * Close connections that should be considered leaked.
+   * Close connections not used since leakTimeMinutes before now that should be considered leaked.
    */
-  void closeBusyConnections(long leakTimeMinutes) {
-    long olderThanTime = System.currentTimeMillis() - (leakTimeMinutes * 60000);
+  void closeBusyConnections(long now, long leakTimeMinutes) {
+    long olderThanTime = now - (leakTimeMinutes * 60000);
     Log.debug("Closing busy connections using leakTimeMinutes {0}", leakTimeMinutes);
     for (int i = 0; i < slots.length; i++) {
       if (slots[i] != null) {
@@ -96,14 +134,45 @@ final class BusyConnectionBuffer {
           // PooledConnection has been used recently or
           // expected to be longRunning so not closing...
         } else {
-          slots[i] = null;
-          --size;
+          clearSlot(i);
           closeBusyConnection(pc);
         }
       }
     }
   }
 
+  /**
+   * Return the busy connections obtained before startedBefore that have not already
+   * been reported as suspected leaks, removing them when reclaim is true.
+   * <p>
+   * Connections parked in the bag or claimed from the bag and not yet reset for use are skipped.
+   */
+  List<PooledConnection> leakSuspects(long startedBefore, boolean reclaim) {
+    List<PooledConnection> suspects = new ArrayList<>();
+    for (int i = 0; i < slots.length; i++) {
+      PooledConnection pc = slots[i];
+      if (pc != null && pc.bagState == ConnectionBag.STATE_NONE && pc.inUse()
+        && pc.startUseTime() < startedBefore && pc.markLeakReported()) {
+        suspects.add(pc);
+        if (reclaim) {
+          clearSlot(i);
+        }
+      }
+    }
+    return suspects;
+  }
+
+  /**
+   * Capture the stack trace of the holder of the connections obtained before startedBefore.
+   */
+  void captureHolderStackTraces(long startedBefore) {
+    for (PooledConnection pc : slots) {
+      if (pc != null && pc.bagState == ConnectionBag.STATE_NONE && pc.inUse() && pc.startUseTime() < startedBefore) {
+        pc.captureHolderStackTrace();
+      }
+    }
+  }
+
   private void closeBusyConnection(PooledConnection pc) {
     try {
       Log.warn("DataSource closing busy connection? {0}", pc.fullDescription());
@@ -135,25 +204,61 @@ final class BusyConnectionBuffer {
   }
 
 
+  private void clearSlot(int slot) {
+    slots[slot] = null;
+    --size;
+    if (slot < capacity) {
+      markEmpty(slot);
+    }
+  }
+
+  private void markEmpty(int slot) {
+    empty[slot >>> 6] |= 1L << slot;
+    emptyCount++;
+  }
+
+  private boolean isEmpty(int slot) {
+    return (empty[slot >>> 6] & (1L << slot)) != 0;
+  }
+
+  private static int words(int capacity) {
+    return (capacity + 63) >>> 6;
+  }
+
   /**
    * Return the position of the next empty slot.
    */
   private int nextEmptySlot() {
     // search forward
-    while (++pos < slots.length) {
-      if (slots[pos] == null) {
-        return pos;
+    int slot = nextEmptySlot(pos + 1);
+    if (slot == -1) {
+      // search from beginning
+      slot = nextEmptySlot(0);
+      if (slot == -1) {
+        // not expecting this
+        throw new RuntimeException("No Empty Slot Found?");
       }
     }
-    // search from beginning
-    pos = -1;
-    while (++pos < slots.length) {
-      if (slots[pos] == null) {
-        return pos;
+    pos = slot;
+    return slot;
+  }
+
+  /**
+   * Return the first empty slot at or after from or -1 if there is none.
+   */
+  private int nextEmptySlot(int from) {
+    int word = from >>> 6;
+    if (word >= empty.length) {
+      return -1;
+    }
+    long bits = empty[word] & (-1L << from);
+    while (bits == 0) {
+      if (++word == empty.length) {
+        return -1;
       }
+      bits = empty[word];
     }
-    // not expecting this
-    throw new RuntimeException("No Empty Slot Found?");
+    return (word << 6) + Long.numberOfTrailingZeros(bits);
   }
 
 }
@@ -0,0 +1,127 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.CallSiteStatus;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection usage aggregated for a call site.
+ * <p>
+ * Call sites are interned by the tracker and updated without a lock. The
+ * description is built from the frames when first read.
+ */
+final class CallSite {
+
+  private final int id;
+  private final CallSiteTracker.Key key;
+  private volatile String callSite;
+  private final LongAdder borrowCount = new LongAdder();
+  private final LongAdder totalHoldNanos = new LongAdder();
+  private final LongAccumulator maxHoldNanos = new LongAccumulator(Math::max, 0);
+
+  CallSite(int id, CallSiteTracker.Key key) {
+    this.id = id;
+    this.key = key;
+  }
+
+  /**
+   * Create a call site with a fixed description.
+   */
+  CallSite(int id, String callSite) {
+    this.id = id;
+    this.key = null;
+    this.callSite = callSite;
+  }
+
+  @Override
+  public String toString() {
+    return "id[" + id + "] callSite[" + callSite() + "]";
+  }
+
+  /**
+   * Return the call site description.
+   */
+  String callSite() {
+    String description = callSite;
+    if (description == null) {
+      // racing threads build the same description
+      description = key.description();
+      callSite = description;
+    }
+    return description;
+  }
+
+  /**
+   * A connection was obtained by this call site.
+   */
+  void borrowed() {
+    borrowCount.increment();
+  }
+
+  /**
+   * A connection obtained by this call site was closed after being held for holdNanos.
+   */
+  void held(long holdNanos) {
+    totalHoldNanos.add(holdNanos);
+    maxHoldNanos.accumulate(holdNanos);
+  }
+
+  /**
+   * Return the statistics optionally resetting the counters.
+   */
+  CallSiteStatus status(boolean reset) {
+    if (reset) {
+      return new Status(id, callSite(), borrowCount.sumThenReset(), totalHoldNanos.sumThenReset(), maxHoldNanos.getThenReset());
+    }
+    return new Status(id, callSite(), borrowCount.sum(), totalHoldNanos.sum(), maxHoldNanos.get());
+  }
+
+  static final class Status implements CallSiteStatus {
+
+    private final int id;
+    private final String callSite;
+    private final long borrowCount;
+    private final long totalHoldMicros;
+    private final long maxHoldMicros;
+
+    Status(int id, String callSite, long borrowCount, long totalHoldNanos, long maxHoldNanos) {
+      this.id = id;
+      this.callSite = callSite;
+      this.borrowCount = borrowCount;
+      this.totalHoldMicros = totalHoldNanos / 1000;
+      this.maxHoldMicros = maxHoldNanos / 1000;
+    }
+
+    @Override
+    public String toString() {
+      return "id[" + id + "] borrowCount[" + borrowCount + "] totalHoldMicros[" + totalHoldMicros
+        + "] maxHoldMicros[" + maxHoldMicros + "] callSite[" + callSite + "]";
+    }
+
+    @Override
+    public int id() {
+      return id;
+    }
+
+    @Override
+    public String callSite() {
+      return callSite;
+    }
+
+    @Override
+    public long borrowCount() {
+      return borrowCount;
+    }
+
+    @Override
+    public long totalHoldMicros() {
+      return totalHoldMicros;
+    }
+
+    @Override
+    public long maxHoldMicros() {
+      return maxHoldMicros;
+    }
+  }
+}
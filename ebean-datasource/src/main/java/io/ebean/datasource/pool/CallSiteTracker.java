@@ -0,0 +1,175 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.CallSiteStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Determines the call site obtaining a connection using StackWalker.
+ * <p>
+ * Only the first few frames outside the pool and the skipped packages are
+ * walked (rather than capturing the full stack trace) and the call sites are
+ * interned such that usage is aggregated per call site. The call sites are
+ * keyed by the class name, method name and bytecode index of the frames (not
+ * referencing the classes such that class loaders can be unloaded) and the
+ * description is only built when it is read.
+ * <p>
+ * At most maxCallSites call sites are tracked. Usage by further call sites
+ * (for example dynamically generated code) is aggregated in a single "other"
+ * call site.
+ */
+final class CallSiteTracker {
+
+  static final int MAX_CALL_SITES = 1000;
+
+  private static final String[] JDK_PACKAGES = {"java.", "javax.", "jdk.", "sun."};
+  private static final String TRACKER_CLASS = CallSiteTracker.class.getName();
+  private static final String POOL_CLASS = ConnectionPool.class.getName();
+
+  private final StackWalker walker = StackWalker.getInstance();
+  private final ConcurrentHashMap<Key, CallSite> callSites = new ConcurrentHashMap<>();
+  private final AtomicInteger callSiteId = new AtomicInteger();
+  private final CallSite other = new CallSite(0, "other");
+  private final String[] skipPackages;
+  private final int frames;
+  private final int maxCallSites;
+
+  CallSiteTracker(int frames, List<String> skipPackages) {
+    this(frames, skipPackages, MAX_CALL_SITES);
+  }
+
+  CallSiteTracker(int frames, List<String> skipPackages, int maxCallSites) {
+    this.frames = Math.max(frames, 1);
+    this.maxCallSites = maxCallSites;
+    final List<String> skip = new ArrayList<>(List.of(JDK_PACKAGES));
+    if (skipPackages != null) {
+      skip.addAll(skipPackages);
+    }
+    this.skipPackages = skip.toArray(new String[0]);
+  }
+
+  /**
+   * Return the call site of the current thread.
+   */
+  CallSite callSite() {
+    final Key key = walker.walk(stack -> new Key(stack
+      .dropWhile(frame -> isPoolFrame(frame.getClassName()))
+      .filter(frame -> !skip(frame.getClassName()))
+      .limit(frames)
+      .toArray(StackWalker.StackFrame[]::new)));
+    final CallSite callSite = callSites.get(key);
+    if (callSite != null) {
+      return callSite;
+    }
+    if (callSites.size() >= maxCallSites) {
+      return other;
+    }
+    return callSites.computeIfAbsent(key, k -> new CallSite(callSiteId.incrementAndGet(), k));
+  }
+
+  /**
+   * The pool classes that are on the stack when a connection is obtained.
+   */
+  private static boolean isPoolFrame(String className) {
+    return className.equals(TRACKER_CLASS) || className.equals(POOL_CLASS);
+  }
+
+  private boolean skip(String className) {
+    for (String skipPackage : skipPackages) {
+      if (className.startsWith(skipPackage)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return the call site statistics ordered by total hold time descending.
+   */
+  List<CallSiteStatus> status(boolean reset) {
+    final List<CallSiteStatus> status = new ArrayList<>(callSites.size() + 1);
+    for (CallSite callSite : callSites.values()) {
+      status.add(callSite.status(reset));
+    }
+    final CallSiteStatus otherStatus = other.status(reset);
+    if (otherStatus.borrowCount() > 0) {
+      status.add(otherStatus);
+    }
+    status.sort(Comparator.comparingLong(CallSiteStatus::totalHoldMicros).reversed());
+    return status;
+  }
+
+  /**
+   * The frames of a call site compared by class name, method name and bytecode index.
+   */
+  static final class Key {
+
+    private final String[] classNames;
+    private final String[] methodNames;
+    private final int[] byteCodeIndexes;
+    private final int[] lineNumbers;
+    private final int hash;
+
+    Key(StackWalker.StackFrame[] frames) {
+      final int length = frames.length;
+      this.classNames = new String[length];
+      this.methodNames = new String[length];
+      this.byteCodeIndexes = new int[length];
+      this.lineNumbers = new int[length];
+      int hash = 1;
+      for (int i = 0; i < length; i++) {
+        final StackWalker.StackFrame frame = frames[i];
+        classNames[i] = frame.getClassName();
+        methodNames[i] = frame.getMethodName();
+        byteCodeIndexes[i] = frame.getByteCodeIndex();
+        lineNumbers[i] = frame.getLineNumber();
+        hash = 31 * hash + classNames[i].hashCode();
+        hash = 31 * hash + methodNames[i].hashCode();
+        hash = 31 * hash + byteCodeIndexes[i];
+      }
+      this.hash = hash;
+    }
+
+    /**
+     * Return the description of the frames (including line numbers).
+     */
+    String description() {
+      final StringJoiner joiner = new StringJoiner(" < ");
+      for (int i = 0; i < classNames.length; i++) {
+        joiner.add(classNames[i] + '.' + methodNames[i] + ':' + lineNumbers[i]);
+      }
+      return joiner.toString();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return hash == other.hash
+        && Arrays.equals(byteCodeIndexes, other.byteCodeIndexes)
+        && Arrays.equals(methodNames, other.methodNames)
+        && Arrays.equals(classNames, other.classNames);
+    }
+
+    @Override
+    public String toString() {
+      return description();
+    }
+  }
+}
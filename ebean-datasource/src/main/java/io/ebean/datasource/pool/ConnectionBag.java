@@ -0,0 +1,170 @@
+package io.ebean.datasource.pool;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Lock free fast path for obtaining and returning connections.
+ * <p>
+ * A returned connection is parked in the bag and remains registered in the
+ * BusyConnectionBuffer. It is claimed via a CAS on the connection bag state.
+ * Each thread has a small affinity list of the connections it recently returned
+ * which are tried first, followed by the shared list of all connections that
+ * have been parked in the bag.
+ * <p>
+ * When no connection can be claimed the caller falls back to the locked
+ * PooledConnectionQueue. The queue drains the bag (under its lock) to trim,
+ * reset and shutdown the pool.
+ */
+final class ConnectionBag {
+
+  /**
+   * Not parked in the bag (busy or held by the queue).
+   */
+  static final int STATE_NONE = 0;
+
+  /**
+   * Parked in the bag and available to be claimed.
+   */
+  static final int STATE_FREE = 1;
+
+  /**
+   * Closed, never to be claimed again.
+   */
+  static final int STATE_CLOSED = 2;
+
+  private static final int AFFINITY_SIZE = 4;
+
+  private static final AtomicIntegerFieldUpdater<PooledConnection> STATE =
+    AtomicIntegerFieldUpdater.newUpdater(PooledConnection.class, "bagState");
+
+  private static final PooledConnection[] EMPTY = new PooledConnection[0];
+
+  private final ThreadLocal<List<WeakReference<PooledConnection>>> affinity =
+    ThreadLocal.withInitial(() -> new ArrayList<>(AFFINITY_SIZE));
+
+  /**
+   * Copy on write array of all the connections that have been parked in the bag.
+   */
+  private volatile PooledConnection[] shared = EMPTY;
+
+  /**
+   * Number of connections parked in the bag, maintained with the state transitions
+   * such that it is read without scanning the shared list.
+   */
+  private final AtomicInteger idle = new AtomicInteger();
+
+  /**
+   * Park the returned connection making it available to be claimed.
+   */
+  void offer(PooledConnection c) {
+    if (!c.bagMember) {
+      c.bagMember = true;
+      register(c);
+    }
+    // counted before it can be claimed such that the count does not go negative
+    idle.incrementAndGet();
+    STATE.set(c, STATE_FREE);
+    addAffinity(c);
+  }
+
+  /**
+   * Claim a parked connection returning null if none could be claimed.
+   */
+  PooledConnection poll() {
+    final List<WeakReference<PooledConnection>> recent = affinity.get();
+    for (int i = recent.size() - 1; i >= 0; i--) {
+      final PooledConnection c = recent.get(i).get();
+      if (c == null) {
+        recent.remove(i);
+      } else if (claim(c)) {
+        return c;
+      }
+    }
+    final PooledConnection[] all = shared;
+    final int length = all.length;
+    if (length > 0) {
+      // start at a random position to spread contention
+      final int offset = ThreadLocalRandom.current().nextInt(length);
+      for (int i = 0; i < length; i++) {
+        final PooledConnection c = all[(offset + i) % length];
+        if (claim(c)) {
+          return c;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Claim the given connection if it is still parked in the bag.
+   */
+  boolean claim(PooledConnection c) {
+    if (c.bagState == STATE_FREE && STATE.compareAndSet(c, STATE_FREE, STATE_NONE)) {
+      idle.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Return the number of connections parked in the bag.
+   */
+  int idleCount() {
+    return idle.get();
+  }
+
+  /**
+   * Claim all the parked connections and purge closed connections from the shared list.
+   */
+  List<PooledConnection> drain() {
+    final List<PooledConnection> drained = new ArrayList<>();
+    for (PooledConnection c : shared) {
+      if (claim(c)) {
+        drained.add(c);
+      }
+    }
+    purgeClosed();
+    return drained;
+  }
+
+  private synchronized void register(PooledConnection c) {
+    final PooledConnection[] current = shared;
+    final PooledConnection[] copy = Arrays.copyOf(current, current.length + 1);
+    copy[current.length] = c;
+    shared = copy;
+  }
+
+  private synchronized void purgeClosed() {
+    final PooledConnection[] current = shared;
+    final List<PooledConnection> open = new ArrayList<>(current.length);
+    for (PooledConnection c : current) {
+      if (c.bagState == STATE_CLOSED) {
+        c.bagMember = false;
+      } else {
+        open.add(c);
+      }
+    }
+    if (open.size() < current.length) {
+      shared = open.toArray(EMPTY);
+    }
+  }
+
+  private void addAffinity(PooledConnection c) {
+    final List<WeakReference<PooledConnection>> recent = affinity.get();
+    for (int i = 0; i < recent.size(); i++) {
+      if (recent.get(i).get() == c) {
+        return;
+      }
+    }
+    if (recent.size() == AFFINITY_SIZE) {
+      recent.remove(0);
+    }
+    recent.add(new WeakReference<>(c));
+  }
+}
@@ -1,9 +1,16 @@
 package io.ebean.datasource.pool;
 
+import java.lang.ref.Reference;
 import java.sql.*;
 import java.util.Properties;
 import java.util.concurrent.Executor;
 
+/**
+ * Delegates the Connection methods that need no pool specific behaviour.
+ * <p>
+ * Each method keeps this reachable until the delegate returns as a ConnectionHandle
+ * is reclaimed by a Cleaner when it becomes unreachable.
+ */
 abstract class ConnectionDelegator implements Connection {
 
   private final Connection delegate;
@@ -21,90 +28,158 @@ abstract class ConnectionDelegator implements Connection {
 
   @Override
   public final String getSchema() throws SQLException {
-    return delegate.getSchema();
+    try {
+      return delegate.getSchema();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final void abort(Executor executor) throws SQLException {
-    delegate.abort(executor);
+    try {
+      delegate.abort(executor);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
-    delegate.setNetworkTimeout(executor, milliseconds);
+    try {
+      delegate.setNetworkTimeout(executor, milliseconds);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final int getNetworkTimeout() throws SQLException {
-    return delegate.getNetworkTimeout();
+    try {
+      return delegate.getNetworkTimeout();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final Clob createClob() throws SQLException {
-    return delegate.createClob();
+    try {
+      return delegate.createClob();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final Blob createBlob() throws SQLException {
-    return delegate.createBlob();
+    try {
+      return delegate.createBlob();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final NClob createNClob() throws SQLException {
-    return delegate.createNClob();
+    try {
+      return delegate.createNClob();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final SQLXML createSQLXML() throws SQLException {
-    return delegate.createSQLXML();
+    try {
+      return delegate.createSQLXML();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final boolean isValid(int timeout) throws SQLException {
-    return delegate.isValid(timeout);
+    try {
+      return delegate.isValid(timeout);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final void setClientInfo(String name, String value) throws SQLClientInfoException {
-    delegate.setClientInfo(name, value);
+    try {
+      delegate.setClientInfo(name, value);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final void setClientInfo(Properties properties) throws SQLClientInfoException {
-    delegate.setClientInfo(properties);
+    try {
+      delegate.setClientInfo(properties);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final String getClientInfo(String name) throws SQLException {
-    return delegate.getClientInfo(name);
+    try {
+      return delegate.getClientInfo(name);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final Properties getClientInfo() throws SQLException {
-    return delegate.getClientInfo();
+    try {
+      return delegate.getClientInfo();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final Array createArrayOf(String typeName, Object[] elements) throws SQLException {
-    return delegate.createArrayOf(typeName, elements);
+    try {
+      return delegate.createArrayOf(typeName, elements);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @Override
   public final Struct createStruct(String typeName, Object[] attributes) throws SQLException {
-    return delegate.createStruct(typeName, attributes);
+    try {
+      return delegate.createStruct(typeName, attributes);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public final <T> T unwrap(Class<T> iface) throws SQLException {
-    if (iface.equals(java.sql.Connection.class)) {
-      return (T) delegate;
+    try {
+      if (iface.equals(java.sql.Connection.class)) {
+        return (T) delegate;
+      }
+      return delegate.unwrap(iface);
+    } finally {
+      Reference.reachabilityFence(this);
     }
-    return delegate.unwrap(iface);
   }
 
   @Override
   public final boolean isWrapperFor(Class<?> iface) throws SQLException {
-    return delegate.isWrapperFor(iface);
+    try {
+      return delegate.isWrapperFor(iface);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
   }
 }
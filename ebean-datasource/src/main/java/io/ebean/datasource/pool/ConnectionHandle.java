@@ -0,0 +1,409 @@
+package io.ebean.datasource.pool;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.sql.*;
+import java.util.Map;
+
+/**
+ * A thin logical connection given to the application when reclaimUnreachable is on.
+ * <p>
+ * The handle is registered with a Cleaner such that when the application drops the
+ * handle without calling close() the pooled connection is rolled back and returned
+ * to the pool (rather than its busy slot being lost until the pool is reset).
+ * <p>
+ * Each method keeps the handle reachable until the pooled connection returns.
+ * Statements obtained from the handle and their result sets are pool owned wrappers
+ * that reference it until closed such that it is not reclaimed while any of them are
+ * still referenced by the application. Nothing in the pool references the handle or
+ * these wrappers (the driver may reference its own statements and result sets from
+ * the physical connection), so a handle dropped together with its unclosed
+ * statements is still reclaimed.
+ */
+final class ConnectionHandle extends ConnectionDelegator {
+
+  private static final Cleaner CLEANER = Cleaner.create();
+
+  private final PooledConnection pc;
+  private final Reclaim reclaim;
+  private final Cleaner.Cleanable cleanable;
+
+  ConnectionHandle(PooledConnection pc) {
+    super(pc.delegate());
+    this.pc = pc;
+    this.reclaim = new Reclaim(pc);
+    this.cleanable = CLEANER.register(this, reclaim);
+  }
+
+  /**
+   * Return the pooled connection to the pool if the handle was not closed.
+   * <p>
+   * Must not reference the handle such that the handle can become unreachable.
+   */
+  private static final class Reclaim implements Runnable {
+
+    private final PooledConnection pc;
+    private final long borrowCount;
+    private volatile boolean closed;
+
+    Reclaim(PooledConnection pc) {
+      this.pc = pc;
+      this.borrowCount = pc.borrowCount();
+    }
+
+    @Override
+    public void run() {
+      if (!closed) {
+        pc.reclaim(borrowCount);
+      }
+    }
+  }
+
+  private <T extends Statement> T owned(T statement) {
+    ((ExtendedStatement) statement).ownedBy(this);
+    return statement;
+  }
+
+  @Override
+  public String toString() {
+    return pc.toString();
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (reclaim.closed) {
+      return;
+    }
+    try {
+      reclaim.closed = true;
+      pc.close();
+    } finally {
+      cleanable.clean();
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public boolean isClosed() throws SQLException {
+    try {
+      return reclaim.closed || pc.isClosed();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void commit() throws SQLException {
+    try {
+      pc.commit();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void rollback() throws SQLException {
+    try {
+      pc.rollback();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void rollback(Savepoint savepoint) throws SQLException {
+    try {
+      pc.rollback(savepoint);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public Statement createStatement() throws SQLException {
+    try {
+      return new HandleStatement(pc.createStatement(), this);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+    try {
+      return new HandleStatement(pc.createStatement(resultSetType, resultSetConcurrency), this);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    try {
+      return new HandleStatement(pc.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), this);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql) throws SQLException {
+    try {
+      return owned(pc.prepareStatement(sql));
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+    try {
+      return owned(pc.prepareStatement(sql, autoGeneratedKeys));
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+    try {
+      return owned(pc.prepareStatement(sql, resultSetType, resultSetConcurrency));
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    try {
+      return owned(pc.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+    try {
+      return owned(pc.prepareStatement(sql, columnIndexes));
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+    try {
+      return owned(pc.prepareStatement(sql, columnNames));
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public CallableStatement prepareCall(String sql) throws SQLException {
+    try {
+      return owned(pc.prepareCall(sql));
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+    try {
+      return owned(pc.prepareCall(sql, resultSetType, resultSetConcurrency));
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    try {
+      return owned(pc.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public boolean getAutoCommit() throws SQLException {
+    try {
+      return pc.getAutoCommit();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void setAutoCommit(boolean autoCommit) throws SQLException {
+    try {
+      pc.setAutoCommit(autoCommit);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public boolean isReadOnly() throws SQLException {
+    try {
+      return pc.isReadOnly();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void setReadOnly(boolean readOnly) throws SQLException {
+    try {
+      pc.setReadOnly(readOnly);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public int getTransactionIsolation() throws SQLException {
+    try {
+      return pc.getTransactionIsolation();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void setTransactionIsolation(int level) throws SQLException {
+    try {
+      pc.setTransactionIsolation(level);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public String getCatalog() throws SQLException {
+    try {
+      return pc.getCatalog();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void setCatalog(String catalog) throws SQLException {
+    try {
+      pc.setCatalog(catalog);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void setSchema(String schema) throws SQLException {
+    try {
+      pc.setSchema(schema);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public int getHoldability() throws SQLException {
+    try {
+      return pc.getHoldability();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void setHoldability(int holdability) throws SQLException {
+    try {
+      pc.setHoldability(holdability);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public Map<String, Class<?>> getTypeMap() throws SQLException {
+    try {
+      return pc.getTypeMap();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+    try {
+      pc.setTypeMap(map);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public String nativeSQL(String sql) throws SQLException {
+    try {
+      return pc.nativeSQL(sql);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public DatabaseMetaData getMetaData() throws SQLException {
+    try {
+      return pc.getMetaData();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public SQLWarning getWarnings() throws SQLException {
+    try {
+      return pc.getWarnings();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void clearWarnings() throws SQLException {
+    try {
+      pc.clearWarnings();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public Savepoint setSavepoint() throws SQLException {
+    try {
+      return pc.setSavepoint();
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public Savepoint setSavepoint(String name) throws SQLException {
+    try {
+      return pc.setSavepoint(name);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+
+  @Override
+  public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+    try {
+      pc.releaseSavepoint(savepoint);
+    } finally {
+      Reference.reachabilityFence(this);
+    }
+  }
+}
@@ -5,13 +5,17 @@ import io.ebean.datasource.*;
 import javax.sql.DataSource;
 import java.io.PrintWriter;
 import java.sql.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -70,10 +74,16 @@ final class ConnectionPool implements DataSourcePool {
   private final long maxAgeMillis;
   private final boolean captureStackTrace;
   private final int maxStackTraceSize;
+  private final int stackTraceSampleRate;
   private final Properties clientInfo;
   private final String applicationName;
   private final DataSource source;
   private final boolean validateOnHeartbeat;
+  private final boolean threadAffinity;
+  private final int reservedHighPriority;
+  private final int initialConnectionParallelism;
+  private final int longHoldMillis;
+  private final PoolClock clock;
   private long nextTrimTime;
 
   /**
@@ -86,7 +96,14 @@ final class ConnectionPool implements DataSourcePool {
   private int maxConnections;
   private final int waitTimeoutMillis;
   private final int pstmtCacheSize;
+  private final int cstmtCacheSize;
+  private final StatementCachePolicy statementCachePolicy;
   private final PooledConnectionQueue queue;
+  private final PoolAutoScaler autoScaler;
+  private final LeakDetector leakDetector;
+  private final boolean reclaimUnreachable;
+  private final PoolManagement management;
+  private final CallSiteTracker callSiteTracker;
   private Heartbeat heartbeat;
   private int heartbeatPoolExhaustedCount;
   private final ExecutorService executor;
@@ -97,15 +114,19 @@ final class ConnectionPool implements DataSourcePool {
    * connection is used it sets it's lastUsedTime.
    */
   private final long leakTimeMinutes;
-  private final LongAdder pscHit = new LongAdder();
-  private final LongAdder pscMiss = new LongAdder();
-  private final LongAdder pscRem = new LongAdder();
+  private final StatementCacheMetrics pstmtCacheMetrics = new StatementCacheMetrics();
+  private final StatementCacheMetrics cstmtCacheMetrics = new StatementCacheMetrics();
 
   private final boolean shutdownOnJvmExit;
   private Thread shutdownHook;
 
   ConnectionPool(String name, DataSourceConfig params) {
+    this(name, params, clock(params));
+  }
+
+  ConnectionPool(String name, DataSourceConfig params, PoolClock clock) {
     this.config = params;
+    this.clock = clock;
     this.name = name;
     this.notify = params.getAlert();
     this.poolListener = params.getListener();
@@ -119,7 +140,10 @@ final class ConnectionPool implements DataSourcePool {
     this.leakTimeMinutes = params.getLeakTimeMinutes();
     this.captureStackTrace = params.isCaptureStackTrace();
     this.maxStackTraceSize = params.getMaxStackTraceSize();
+    this.stackTraceSampleRate = params.getStackTraceSampleRate();
     this.pstmtCacheSize = params.getPstmtCacheSize();
+    this.cstmtCacheSize = params.getCstmtCacheSize();
+    this.statementCachePolicy = params.getStatementCachePolicy();
     this.minConnections = params.getMinConnections();
     this.initialConnections = params.getInitialConnections();
     this.maxConnections = params.getMaxConnections();
@@ -131,9 +155,17 @@ final class ConnectionPool implements DataSourcePool {
     this.validateOnHeartbeat = params.isValidateOnHeartbeat();
     this.trimPoolFreqMillis = 1000L * params.getTrimPoolFreqSecs();
     this.validateStaleMillis = params.validateStaleMillis();
+    this.threadAffinity = params.isThreadAffinity();
+    this.reservedHighPriority = params.getReservedHighPriority();
+    this.initialConnectionParallelism = params.getInitialConnectionParallelism();
+    this.longHoldMillis = params.getLongHoldMillis();
     this.applicationName = params.getApplicationName();
     this.clientInfo = params.getClientInfo();
     this.queue = new PooledConnectionQueue(this);
+    this.callSiteTracker = params.isCallSiteTracking() ? new CallSiteTracker(params.getCallSiteFrames(), params.getCallSiteSkipPackages()) : null;
+    this.autoScaler = params.isAutoscale() ? new PoolAutoScaler(this, queue, params.getAutoscaleTargetWaitMillis(), params.getAutoscaleCooldownSecs()) : null;
+    this.reclaimUnreachable = params.isReclaimUnreachable();
+    this.leakDetector = params.getLeakDetectionMillis() > 0 ? new LeakDetector(this, queue, poolListener, params.getLeakDetectionMillis(), params.isLeakReclaim()) : null;
     this.schema = params.getSchema();
     this.catalog = params.catalog();
     this.user = params.getUsername();
@@ -143,8 +175,19 @@ final class ConnectionPool implements DataSourcePool {
     if (!params.isOffline()) {
       init();
     }
-    this.nextTrimTime = System.currentTimeMillis() + trimPoolFreqMillis;
+    this.nextTrimTime = clock.millis() + trimPoolFreqMillis;
     this.executor = ExecutorFactory.newExecutor();
+    this.management = params.isRegisterMBean() ? PoolManagement.register(this, queue) : null;
+  }
+
+  /**
+   * Return the clock for the pool. The coarse clock is ticked by a thread started with the heartbeat so needs it to be running.
+   */
+  private static PoolClock clock(DataSourceConfig params) {
+    if (params.getClockResolutionMillis() > 0 && params.getHeartbeatFreqSecs() > 0) {
+      return PoolClock.coarse(params.getClockResolutionMillis());
+    }
+    return PoolClock.system();
   }
 
   private void init() {
@@ -159,12 +202,17 @@ final class ConnectionPool implements DataSourcePool {
   }
 
   /**
-   * Accumulate the prepared statement cache metrics as connections are closed.
+   * Return the prepared statement cache metrics shared by the connections.
+   */
+  StatementCacheMetrics pstmtCacheMetrics() {
+    return pstmtCacheMetrics;
+  }
+
+  /**
+   * Return the callable statement cache metrics shared by the connections.
    */
-  void pstmtCacheMetrics(PstmtCache pstmtCache) {
-    pscHit.add(pstmtCache.hitCount());
-    pscMiss.add(pstmtCache.missCount());
-    pscRem.add(pstmtCache.removeCount());
+  StatementCacheMetrics cstmtCacheMetrics() {
+    return cstmtCacheMetrics;
   }
 
   @Override
@@ -173,17 +221,22 @@ final class ConnectionPool implements DataSourcePool {
   }
 
   private void tryEnsureMinimumConnections() {
-    notifyLock.lock();
     try {
+      // not holding the notifyLock as connections can be created concurrently
+      // and a failed connect notifies that the datasource is down
       queue.createConnections(initialConnections);
+    } catch (SQLException e) {
+      Log.error("Error trying to ensure minimum connections, maybe db server is down - message:" + e.getMessage(), e);
+      return;
+    }
+    notifyLock.lock();
+    try {
       // if we successfully come up without an exception, send datasource up
       // notification. This makes it easier, because the application needs not
       // to implement special handling, if the db comes up the first time or not.
       if (notify != null) {
         notify.dataSourceUp(this);
       }
-    } catch (SQLException e) {
-      Log.error("Error trying to ensure minimum connections, maybe db server is down - message:" + e.getMessage(), e);
     } finally {
       notifyLock.unlock();
     }
@@ -191,12 +244,15 @@ final class ConnectionPool implements DataSourcePool {
 
   private void initialiseConnections() throws SQLException {
     long start = System.currentTimeMillis();
+    // the heartbeat is stopped while offline
+    clock.tick();
     dataSourceUp.set(true);
     if (failOnStart) {
       queue.createConnections(initialConnections);
     } else {
       tryEnsureMinimumConnections();
     }
+    final long connectMillis = System.currentTimeMillis() - start;
     startHeartBeatIfStopped();
 
     if (shutdownOnJvmExit && shutdownHook == null) {
@@ -206,8 +262,9 @@ final class ConnectionPool implements DataSourcePool {
     }
 
     final var ro = readOnly ? "readOnly[true] " : "";
-    Log.info("DataSource [{0}] {1}autoCommit[{2}] [{3}] min[{4}] max[{5}] in[{6}ms]",
-      name, ro, autoCommit, description(transactionIsolation), minConnections, maxConnections, (System.currentTimeMillis() - start), validateOnHeartbeat);
+    Log.info("DataSource [{0}] {1}autoCommit[{2}] [{3}] min[{4}] max[{5}] in[{6}ms] initial[{7}] connect[{8}ms] parallelism[{9}]",
+      name, ro, autoCommit, description(transactionIsolation), minConnections, maxConnections, (System.currentTimeMillis() - start),
+      initialConnections, connectMillis, initialConnectionParallelism);
   }
 
   /**
@@ -370,10 +427,10 @@ final class ConnectionPool implements DataSourcePool {
    * Trim connections in the free list based on idle time and maximum age.
    */
   private void trimIdleConnections() {
-    if (System.currentTimeMillis() > nextTrimTime) {
+    if (clock.millis() > nextTrimTime) {
       try {
         queue.trim(maxInactiveMillis, maxAgeMillis);
-        nextTrimTime = System.currentTimeMillis() + trimPoolFreqMillis;
+        nextTrimTime = clock.millis() + trimPoolFreqMillis;
       } catch (Exception e) {
         Log.error("Error trying to trim idle connections - message:" + e.getMessage(), e);
       }
@@ -381,13 +438,24 @@ final class ConnectionPool implements DataSourcePool {
   }
 
   /**
-   * Check the dataSource is up. Trim connections.
+   * Check the dataSource is up. Trim connections. Adjust the pool size when autoscale is on.
+   * Report (and optionally reclaim) connections suspected to have leaked.
    * <p>
    * This is called by the HeartbeatRunnable which should be scheduled to
    * run periodically (every heartbeatFreqSecs seconds).
    */
   void heartbeat() {
+    clock.tick();
     trimIdleConnections();
+    if (autoScaler != null) {
+      autoScaler.run();
+    }
+    if (captureStackTrace && stackTraceSampleRate > 1 && longHoldMillis > 0) {
+      queue.captureHolderStackTraces(clock.millis() - longHoldMillis);
+    }
+    if (leakDetector != null) {
+      leakDetector.run();
+    }
     if (validateOnHeartbeat) {
       testConnection();
     }
@@ -516,7 +584,53 @@ final class ConnectionPool implements DataSourcePool {
     return validateStaleMillis;
   }
 
-  private boolean testConnection(Connection conn) throws SQLException {
+  /**
+   * Return true if connections are obtained and returned via the lock free fast path.
+   */
+  boolean threadAffinity() {
+    return threadAffinity;
+  }
+
+  /**
+   * Return the number of connections reserved for high priority borrowers.
+   */
+  int reservedHighPriority() {
+    return reservedHighPriority;
+  }
+
+  /**
+   * Return the number of connections created concurrently when starting the pool.
+   */
+  int initialConnectionParallelism() {
+    return initialConnectionParallelism;
+  }
+
+  /**
+   * Return the hold time in millis at or above which a connection hold is counted as a long hold.
+   */
+  int longHoldMillis() {
+    return longHoldMillis;
+  }
+
+  /**
+   * Return the clock used for the pool timestamps.
+   */
+  PoolClock clock() {
+    return clock;
+  }
+
+  private boolean testConnection(PooledConnection conn) throws SQLException {
+    final long start = System.nanoTime();
+    boolean valid = false;
+    try {
+      valid = validate(conn);
+      return valid;
+    } finally {
+      PoolEvents.validated(this, conn, valid, System.nanoTime() - start);
+    }
+  }
+
+  private boolean validate(Connection conn) throws SQLException {
     if (heartbeatSql == null) {
       return conn.isValid(heartbeatTimeoutSeconds);
     }
@@ -577,6 +691,90 @@ final class ConnectionPool implements DataSourcePool {
     }
   }
 
+  /**
+   * Record the time a connection was held from being obtained until it was closed.
+   */
+  void recordHold(long holdNanos) {
+    queue.recordHold(holdNanos);
+  }
+
+  /**
+   * Return the prepared statement cache hits of all the connections.
+   */
+  long pscHit() {
+    return pstmtCacheMetrics.hitCount();
+  }
+
+  /**
+   * Return the prepared statement cache misses of all the connections.
+   */
+  long pscMiss() {
+    return pstmtCacheMetrics.missCount();
+  }
+
+  /**
+   * Return the prepared statement cache removals of all the connections.
+   */
+  long pscRem() {
+    return pstmtCacheMetrics.removeCount();
+  }
+
+  /**
+   * Return the prepared statement cache admission rejections of all the connections.
+   */
+  long pscRej() {
+    return pstmtCacheMetrics.rejectCount();
+  }
+
+  /**
+   * Return the callable statement cache hits of all the connections.
+   */
+  long cscHit() {
+    return cstmtCacheMetrics.hitCount();
+  }
+
+  /**
+   * Return the callable statement cache misses of all the connections.
+   */
+  long cscMiss() {
+    return cstmtCacheMetrics.missCount();
+  }
+
+  /**
+   * Return the callable statement cache removals of all the connections.
+   */
+  long cscRem() {
+    return cstmtCacheMetrics.removeCount();
+  }
+
+  /**
+   * Return the callable statement cache admission rejections of all the connections.
+   */
+  long cscRej() {
+    return cstmtCacheMetrics.rejectCount();
+  }
+
+  /**
+   * Return a description of the busy connections.
+   */
+  String busyConnectionInformation() {
+    return queue.getBusyConnectionInformation();
+  }
+
+  /**
+   * Return the number of busy connections read without the queue lock (for events).
+   */
+  int approxBusy() {
+    return queue.approxBusy();
+  }
+
+  /**
+   * Return the number of free connections read without the queue lock (for events).
+   */
+  int approxFree() {
+    return queue.approxFree();
+  }
+
   void removeClosedConnection(PooledConnection pooledConnection) {
     queue.returnPooledConnection(pooledConnection, true);
   }
@@ -604,8 +802,10 @@ final class ConnectionPool implements DataSourcePool {
    */
   PooledConnection createConnectionForQueue(int connId) throws SQLException {
     try {
+      final long start = System.nanoTime();
       final var pooledConnection = new PooledConnection(this, connId, createConnection());
       pooledConnection.resetForUse();
+      PoolEvents.grow(this, pooledConnection, System.nanoTime() - start);
       notifyDataSourceIsUp();
       return pooledConnection;
     } catch (SQLException ex) {
@@ -624,7 +824,7 @@ final class ConnectionPool implements DataSourcePool {
    * <li>Busy connections are closed when they are returned to the pool.</li>
    * </ul>
    */
-  private void reset() {
+  void reset() {
     heartbeatPoolExhaustedCount = 0;
     queue.reset(leakTimeMinutes);
   }
@@ -644,7 +844,57 @@ final class ConnectionPool implements DataSourcePool {
    */
   @Override
   public Connection getConnection() throws SQLException {
-    return getPooledConnection();
+    return handle(getPooledConnection());
+  }
+
+  /**
+   * Return a pooled connection for a borrower of the given priority.
+   */
+  @Override
+  public Connection getConnection(Priority priority) throws SQLException {
+    return handle(borrowed(queue.obtainConnection(priority)));
+  }
+
+  /**
+   * Return a pooled connection waiting at most maxWait when the pool is at its maximum size.
+   */
+  @Override
+  public Connection getConnection(Duration maxWait) throws SQLException {
+    return handle(borrowed(queue.obtainConnection(maxWait.toNanos())));
+  }
+
+  @Override
+  public CompletableFuture<Connection> getConnectionAsync() {
+    return getConnectionAsync(Duration.ofMillis(waitTimeoutMillis), ForkJoinPool.commonPool());
+  }
+
+  @Override
+  public CompletableFuture<Connection> getConnectionAsync(Duration timeout, Executor executor) {
+    final Thread holder = captureStackTrace ? Thread.currentThread() : null;
+    final StackTraceElement[] stackTrace = holder != null && sampleStackTrace() ? holder.getStackTrace() : null;
+    final CallSite callSite = callSiteTracker != null ? callSiteTracker.callSite() : null;
+    return queue.obtainConnectionAsync(timeout.toNanos(), executor, holder, stackTrace, callSite);
+  }
+
+  /**
+   * Apply the holder, stack trace, call site and listener to a connection obtained
+   * asynchronously returning the connection to give to the application.
+   * <p>
+   * The holder is the thread that requested the connection (as for the blocking path).
+   */
+  Connection borrowedAsync(PooledConnection c, Thread holder, StackTraceElement[] stackTrace, CallSite callSite) {
+    if (stackTrace != null) {
+      c.setStackTrace(stackTrace);
+    } else if (holder != null && longHoldMillis > 0) {
+      c.setHolder(holder);
+    }
+    if (callSite != null) {
+      c.setCallSite(callSite);
+    }
+    if (poolListener != null) {
+      poolListener.onAfterBorrowConnection(c);
+    }
+    return handle(c);
   }
 
   /**
@@ -654,9 +904,20 @@ final class ConnectionPool implements DataSourcePool {
    * will go into a wait if the pool has hit its maximum size.
    */
   private PooledConnection getPooledConnection() throws SQLException {
-    PooledConnection c = queue.obtainConnection();
+    return borrowed(queue.obtainConnection());
+  }
+
+  private PooledConnection borrowed(PooledConnection c) {
     if (captureStackTrace) {
-      c.setStackTrace(Thread.currentThread().getStackTrace());
+      final Thread thread = Thread.currentThread();
+      if (sampleStackTrace()) {
+        c.setStackTrace(thread.getStackTrace());
+      } else if (longHoldMillis > 0) {
+        c.setHolder(thread);
+      }
+    }
+    if (callSiteTracker != null) {
+      c.setCallSite(callSiteTracker.callSite());
     }
     if (poolListener != null) {
       poolListener.onAfterBorrowConnection(c);
@@ -664,6 +925,21 @@ final class ConnectionPool implements DataSourcePool {
     return c;
   }
 
+  /**
+   * Return the connection to give to the application, a handle that is reclaimed
+   * when unreachable if reclaimUnreachable is on.
+   */
+  private Connection handle(PooledConnection c) {
+    return reclaimUnreachable ? new ConnectionHandle(c) : c;
+  }
+
+  /**
+   * Return true if the stack trace should be captured for this borrow (1 in stackTraceSampleRate).
+   */
+  private boolean sampleStackTrace() {
+    return stackTraceSampleRate <= 1 || ThreadLocalRandom.current().nextInt(stackTraceSampleRate) == 0;
+  }
+
   @Override
   public void shutdown() {
     shutdownPool(true, false);
@@ -682,11 +958,14 @@ final class ConnectionPool implements DataSourcePool {
       dataSourceUp.set(false);
       if (fullShutdown) {
         shutdownExecutor();
+        if (management != null) {
+          management.unregister();
+        }
       }
       if (fromHook) {
-        Log.info("DataSource [{0}] shutdown on JVM exit {1}  psc[hit:{2} miss:{3} rem:{4}]", name, status, pscHit, pscMiss, pscRem);
+        Log.info("DataSource [{0}] shutdown on JVM exit {1}  psc[{2}] csc[{3}]", name, status, pstmtCacheMetrics, cstmtCacheMetrics);
       } else {
-        Log.info("DataSource [{0}] shutdown {1}  psc[hit:{2} miss:{3} rem:{4}]", name, status, pscHit, pscMiss, pscRem);
+        Log.info("DataSource [{0}] shutdown {1}  psc[{2}] csc[{3}]", name, status, pstmtCacheMetrics, cstmtCacheMetrics);
         removeShutdownHook();
       }
     } finally {
@@ -830,6 +1109,14 @@ final class ConnectionPool implements DataSourcePool {
     return pstmtCacheSize;
   }
 
+  int cstmtCacheSize() {
+    return cstmtCacheSize;
+  }
+
+  StatementCachePolicy statementCachePolicy() {
+    return statementCachePolicy;
+  }
+
   /**
    * Not implemented and shouldn't be used.
    */
@@ -867,6 +1154,11 @@ final class ConnectionPool implements DataSourcePool {
     return queue.status(reset);
   }
 
+  @Override
+  public List<CallSiteStatus> callSiteStatus(boolean reset) {
+    return callSiteTracker == null ? List.of() : callSiteTracker.status(reset);
+  }
+
   static final class Status implements PoolStatus {
 
     private final int minSize;
@@ -881,8 +1173,15 @@ final class ConnectionPool implements DataSourcePool {
     private final long maxAcquireMicros;
     private final long totalWaitMicros;
     private final long meanAcquireNanos;
-
-    Status(int minSize, int maxSize, int free, int busy, int waiting, int highWaterMark, int waitCount, int hitCount, long totalAcquireNanos, long maxAcquireNanos, long totalWaitNanos) {
+    private final int[] laneHits;
+    private final int[] laneWaits;
+    private final long[] acquireBuckets;
+    private final long[] holdBuckets;
+    private final long maxHoldMicros;
+    private final long longHoldCount;
+
+    Status(int minSize, int maxSize, int free, int busy, int waiting, int highWaterMark, int waitCount, int hitCount, long totalAcquireNanos, long maxAcquireNanos, long totalWaitNanos,
+           int[] laneHits, int[] laneWaits, long[] acquireBuckets, long[] holdBuckets, long maxHoldNanos, long longHoldCount) {
       this.minSize = minSize;
       this.maxSize = maxSize;
       this.free = free;
@@ -895,13 +1194,31 @@ final class ConnectionPool implements DataSourcePool {
       this.maxAcquireMicros = maxAcquireNanos / 1000;
       this.totalWaitMicros = totalWaitNanos / 1000;
       this.meanAcquireNanos = hitCount == 0 ? 0 : totalAcquireNanos / hitCount;
+      this.laneHits = laneHits;
+      this.laneWaits = laneWaits;
+      this.acquireBuckets = acquireBuckets;
+      this.holdBuckets = holdBuckets;
+      this.maxHoldMicros = maxHoldNanos / 1000;
+      this.longHoldCount = longHoldCount;
     }
 
     @Override
     public String toString() {
       return "min[" + minSize + "] max[" + maxSize + "] free[" + free + "] busy[" + busy + "] waiting[" + waiting
         + "] highWaterMark[" + highWaterMark + "] waitCount[" + waitCount + "] hitCount[" + hitCount
-        + "] totalAcquireMicros[" + totalAcquireMicros + "] maxAcquireMicros[" + maxAcquireMicros + "] totalWaitMicros[" + totalWaitMicros + "]";
+        + "] totalAcquireMicros[" + totalAcquireMicros + "] maxAcquireMicros[" + maxAcquireMicros + "] totalWaitMicros[" + totalWaitMicros + "]"
+        + (laneHits[Priority.NORMAL.ordinal()] == hitCount ? "" : lanes());
+    }
+
+    private String lanes() {
+      StringBuilder sb = new StringBuilder(" lanes[");
+      for (Priority priority : Priority.values()) {
+        if (priority.ordinal() > 0) {
+          sb.append(' ');
+        }
+        sb.append(priority.name().toLowerCase()).append(':').append(hitCount(priority)).append('/').append(waitCount(priority));
+      }
+      return sb.append(']').toString();
     }
 
     @Override
@@ -944,6 +1261,16 @@ final class ConnectionPool implements DataSourcePool {
       return hitCount;
     }
 
+    @Override
+    public int hitCount(Priority priority) {
+      return laneHits[priority.ordinal()];
+    }
+
+    @Override
+    public int waitCount(Priority priority) {
+      return laneWaits[priority.ordinal()];
+    }
+
     @Override
     public long totalAcquireMicros() {
       return totalAcquireMicros;
@@ -963,6 +1290,36 @@ final class ConnectionPool implements DataSourcePool {
     public long meanAcquireNanos() {
       return meanAcquireNanos;
     }
+
+    @Override
+    public long acquireMicros(double percentile) {
+      return LatencyHistogram.percentile(acquireBuckets, percentile) / 1000;
+    }
+
+    @Override
+    public SortedMap<Long, Long> acquireHistogram() {
+      return LatencyHistogram.buckets(acquireBuckets);
+    }
+
+    @Override
+    public long holdMicros(double percentile) {
+      return LatencyHistogram.percentile(holdBuckets, percentile) / 1000;
+    }
+
+    @Override
+    public long maxHoldMicros() {
+      return maxHoldMicros;
+    }
+
+    @Override
+    public long longHoldCount() {
+      return longHoldCount;
+    }
+
+    @Override
+    public SortedMap<Long, Long> holdHistogram() {
+      return LatencyHistogram.buckets(holdBuckets);
+    }
   }
 
 }
@@ -0,0 +1,107 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.Priority;
+
+/**
+ * A waiter for a connection when the pool is at its maximum size.
+ * <p>
+ * Waiters are queued in FIFO order. A returning thread (holding the queue lock)
+ * hands its connection directly to the oldest waiter and signals it, such that
+ * the waiter does not need to re-acquire the lock and can not lose the
+ * connection to a barging thread. When capacity is freed instead (a connection
+ * was closed) the waiter is given a reserved slot to grow the pool.
+ */
+abstract class ConnectionWaiter {
+
+  private static final int WAITING = 0;
+  private static final int HANDOFF = 1;
+  private static final int GROW = 2;
+
+  private final long start;
+  private final long deadline;
+  private final Priority priority;
+  /**
+   * Written before the volatile state such that it is visible to the waiter.
+   */
+  private PooledConnection connection;
+  private volatile int state;
+
+  ConnectionWaiter(long start, long deadline, Priority priority) {
+    this.start = start;
+    this.deadline = deadline;
+    this.priority = priority;
+  }
+
+  /**
+   * Signal the waiter that it has been given a connection or slot.
+   */
+  abstract void signal();
+
+  /**
+   * Return true if the waiter is no longer interested in a connection.
+   */
+  boolean isCancelled() {
+    return false;
+  }
+
+  /**
+   * Return the nanoTime the waiter started trying to obtain a connection.
+   */
+  final long start() {
+    return start;
+  }
+
+  /**
+   * Return the nanoTime after which the waiter times out.
+   */
+  final long deadline() {
+    return deadline;
+  }
+
+  /**
+   * Return the priority of the waiter.
+   */
+  final Priority priority() {
+    return priority;
+  }
+
+  /**
+   * Return true if the waiter has not yet been given a connection or slot.
+   */
+  final boolean isWaiting() {
+    return state == WAITING;
+  }
+
+  /**
+   * Hand the connection (that remains registered as busy) to the waiter.
+   */
+  final void handoff(PooledConnection c) {
+    connection = c;
+    state = HANDOFF;
+    signal();
+  }
+
+  /**
+   * Give the waiter a reserved slot to grow the pool.
+   */
+  final void grow() {
+    connection = null;
+    state = GROW;
+    signal();
+  }
+
+  /**
+   * Return the connection handed to the waiter or null if it was given a slot to grow the pool.
+   */
+  final PooledConnection connection() {
+    return connection;
+  }
+
+  /**
+   * Reset the waiter such that it can wait again.
+   */
+  final void reset() {
+    connection = null;
+    state = WAITING;
+  }
+}
@@ -14,6 +14,22 @@ final class ExecutorFactory {
     return Executors.newSingleThreadExecutor(factory());
   }
 
+  /**
+   * Return a new executor used to create connections concurrently.
+   */
+  static ExecutorService newConnectExecutor(String poolName) {
+    return Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable);
+      thread.setName(connectName(poolName));
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private static String connectName(String poolName) {
+    return poolName.isEmpty() ? "datasource.connect" : "datasource." + poolName + ".connect";
+  }
+
   private static ThreadFactory factory() {
     return runnable -> {
       Thread thread = new Thread(runnable);
@@ -28,7 +44,14 @@ final class ExecutorFactory {
   static Heartbeat newHeartBeat(ConnectionPool pool, int freqMillis) {
     final Timer timer = new Timer(nm(pool.name()), true);
     timer.scheduleAtFixedRate(new HeartbeatTask(pool), freqMillis, freqMillis);
-    return new TimerHeartbeat(timer);
+    final PoolClock clock = pool.clock();
+    Timer clockTimer = null;
+    if (clock.tickMillis() > 0) {
+      // own thread such that a blocked heartbeat (validation or connect) does not stop the clock
+      clockTimer = new Timer(nm(pool.name()) + ".clock", true);
+      clockTimer.scheduleAtFixedRate(new ClockTask(clock), 0, clock.tickMillis());
+    }
+    return new TimerHeartbeat(timer, clockTimer);
   }
 
   private static String nm(String poolName) {
@@ -38,14 +61,19 @@ final class ExecutorFactory {
   private static final class TimerHeartbeat implements Heartbeat {
 
     private final Timer timer;
+    private final Timer clockTimer;
 
-    private TimerHeartbeat(Timer timer) {
+    private TimerHeartbeat(Timer timer, Timer clockTimer) {
       this.timer = timer;
+      this.clockTimer = clockTimer;
     }
 
     @Override
     public void stop() {
       timer.cancel();
+      if (clockTimer != null) {
+        clockTimer.cancel();
+      }
     }
   }
 
@@ -62,4 +90,18 @@ final class ExecutorFactory {
       pool.heartbeat();
     }
   }
+
+  private static final class ClockTask extends TimerTask {
+
+    private final PoolClock clock;
+
+    private ClockTask(PoolClock clock) {
+      this.clock = clock;
+    }
+
+    @Override
+    public void run() {
+      clock.tick();
+    }
+  }
 }
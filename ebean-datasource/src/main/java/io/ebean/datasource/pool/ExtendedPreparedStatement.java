@@ -25,15 +25,19 @@ import java.util.Calendar;
  * notes any Exceptions that occur and this is used to ensure bad connections
  * are removed from the connection pool.
  */
-final class ExtendedPreparedStatement extends ExtendedStatement implements PreparedStatement {
+class ExtendedPreparedStatement extends ExtendedStatement implements PreparedStatement {
 
-  private final String cacheKey;
+  private final PstmtKey cacheKey;
   private boolean closed;
+  /**
+   * True when admitted to the main region of a TinyLFU statement cache.
+   */
+  boolean inMainCache;
 
   /**
    * Create a wrapped PreparedStatement that can be cached.
    */
-  ExtendedPreparedStatement(PooledConnection pooledConnection, PreparedStatement pstmt, String cacheKey) {
+  ExtendedPreparedStatement(PooledConnection pooledConnection, PreparedStatement pstmt, PstmtKey cacheKey) {
     super(pooledConnection, pstmt);
     this.cacheKey = cacheKey;
   }
@@ -49,7 +53,7 @@ final class ExtendedPreparedStatement extends ExtendedStatement implements Prepa
   /**
    * Return the key used to cache this on the Connection.
    */
-  String cacheKey() {
+  PstmtKey cacheKey() {
     return cacheKey;
   }
 
@@ -72,6 +76,14 @@ final class ExtendedPreparedStatement extends ExtendedStatement implements Prepa
       return;
     }
     closed = true;
+    releaseHandle();
+    returnStatement();
+  }
+
+  /**
+   * Return this statement to the statement cache of the connection.
+   */
+  void returnStatement() {
     pooledConnection.returnPreparedStatement(this);
   }
 
@@ -108,7 +120,7 @@ final class ExtendedPreparedStatement extends ExtendedStatement implements Prepa
   @Override
   public ResultSet executeQuery() throws SQLException {
     try {
-      return delegate.executeQuery();
+      return owned(delegate.executeQuery());
     } catch (SQLException ex) {
       pooledConnection.markWithError(ex);
       throw ex;
@@ -19,6 +19,15 @@ abstract class ExtendedStatement extends PreparedStatementDelegator {
    */
   final PooledConnection pooledConnection;
 
+  /**
+   * The handle this statement was obtained through (when reclaimUnreachable is on).
+   * <p>
+   * Held until the statement is closed such that the handle is not reclaimed while the
+   * statement is referenced by the application. Cleared on close as the statement is
+   * then held by the statement cache.
+   */
+  private ConnectionHandle handle;
+
   /**
    * Create the ExtendedStatement for a given pooledConnection.
    */
@@ -27,6 +36,28 @@ abstract class ExtendedStatement extends PreparedStatementDelegator {
     this.pooledConnection = pooledConnection;
   }
 
+  /**
+   * Set the handle this statement was obtained through.
+   */
+  final void ownedBy(ConnectionHandle handle) {
+    this.handle = handle;
+  }
+
+  /**
+   * Release the handle when the statement is closed.
+   */
+  final void releaseHandle() {
+    handle = null;
+  }
+
+  /**
+   * Return the result set holding the handle (if this statement was obtained through one).
+   */
+  final ResultSet owned(ResultSet resultSet) {
+    final ConnectionHandle owner = handle;
+    return owner == null || resultSet == null ? resultSet : new HandleResultSet(resultSet, this, owner);
+  }
+
   /**
    * Put the statement back into the statement cache.
    */
@@ -34,10 +65,14 @@ abstract class ExtendedStatement extends PreparedStatementDelegator {
   public abstract void close() throws SQLException;
 
   /**
-   * Return the underlying connection.
+   * Return the handle this statement was obtained through or otherwise the underlying connection.
    */
   @Override
   public final Connection getConnection() throws SQLException {
+    final ConnectionHandle owner = handle;
+    if (owner != null) {
+      return owner;
+    }
     try {
       return delegate.getConnection();
     } catch (SQLException ex) {
@@ -81,7 +116,7 @@ abstract class ExtendedStatement extends PreparedStatementDelegator {
   public final ResultSet executeQuery(String sql) throws SQLException {
     try {
       pooledConnection.setLastStatement(sql);
-      return delegate.executeQuery(sql);
+      return owned(delegate.executeQuery(sql));
     } catch (SQLException ex) {
       pooledConnection.markWithError(ex);
       throw ex;
@@ -102,4 +137,14 @@ abstract class ExtendedStatement extends PreparedStatementDelegator {
     }
   }
 
+  @Override
+  public final ResultSet getResultSet() throws SQLException {
+    return owned(delegate.getResultSet());
+  }
+
+  @Override
+  public final ResultSet getGeneratedKeys() throws SQLException {
+    return owned(delegate.getGeneratedKeys());
+  }
+
 }
@@ -1,76 +1,137 @@
 package io.ebean.datasource.pool;
 
-import java.util.*;
+import java.util.Arrays;
 
 /**
  * A buffer designed especially to hold free pooled connections.
  * <p>
+ * Array based stack with the most recently used connection on top such that
+ * add and remove do not allocate. The least recently used connections are at
+ * the bottom (the cold end) and are the ones trimmed.
+ * <p>
  * All thread safety controlled externally (by PooledConnectionQueue).
  * </p>
  */
 final class FreeConnectionBuffer {
 
-  /**
-   * Buffer oriented for add and remove.
-   */
-  private final LinkedList<PooledConnection> freeBuffer = new LinkedList<>();
+  private PooledConnection[] buffer;
+  private int size;
+
+  FreeConnectionBuffer() {
+    this(16);
+  }
+
+  FreeConnectionBuffer(int capacity) {
+    this.buffer = new PooledConnection[Math.max(capacity, 1)];
+  }
 
   /**
    * Return the number of entries in the buffer.
    */
   int size() {
-    return freeBuffer.size();
+    return size;
   }
 
   /**
    * Return true if the buffer is empty.
    */
   boolean isEmpty() {
-    return freeBuffer.isEmpty();
+    return size == 0;
   }
 
   /**
    * Add connection to the free list.
    */
   void add(PooledConnection pc) {
-    freeBuffer.addFirst(pc);
+    if (size == buffer.length) {
+      buffer = Arrays.copyOf(buffer, size * 2);
+    }
+    buffer[size++] = pc;
   }
 
   /**
-   * Remove a connection from the free list.
+   * Remove the most recently used connection from the free list.
    */
   PooledConnection remove() {
-    return freeBuffer.removeFirst();
+    final PooledConnection pc = buffer[--size];
+    buffer[size] = null;
+    return pc;
   }
 
   /**
    * Close all connections in this buffer.
    */
   void closeAll(boolean logErrors) {
-    List<PooledConnection> tempList = new ArrayList<>(freeBuffer);
-    freeBuffer.clear();
+    final PooledConnection[] temp = Arrays.copyOf(buffer, size);
+    clear(0);
     if (Log.isLoggable(System.Logger.Level.TRACE)) {
-      Log.trace("... closing all {0} connections from the free list with logErrors: {1}", tempList.size(), logErrors);
+      Log.trace("... closing all {0} connections from the free list with logErrors: {1}", temp.length, logErrors);
     }
-    for (PooledConnection connection : tempList) {
+    for (PooledConnection connection : temp) {
       connection.closeConnectionFully(logErrors);
     }
   }
 
+  /**
+   * Close the least recently used connections such that the buffer holds at most size connections.
+   */
+  int trimTo(int size) {
+    final int trimCount = this.size - size;
+    if (trimCount <= 0) {
+      return 0;
+    }
+    for (int i = 0; i < trimCount; i++) {
+      buffer[i].closeConnectionFully(true);
+    }
+    System.arraycopy(buffer, trimCount, buffer, 0, size);
+    clear(size);
+    return trimCount;
+  }
+
   /**
    * Trim any inactive connections that have not been used since usedSince.
+   * <p>
+   * The minSize most recently used connections are retained. The stack is ordered
+   * by last use so the idle connections are checked from the cold end stopping at
+   * the first connection used since. Only when createdSince is set (maxAge) are the
+   * remaining connections checked, as creation time is not ordered. The retained
+   * connections are then shifted down once (in their existing order).
    */
   int trim(int minSize, long usedSince, long createdSince) {
-    int trimCount = 0;
-    ListIterator<PooledConnection> iterator = freeBuffer.listIterator(minSize);
-    while (iterator.hasNext()) {
-      PooledConnection pooledConnection = iterator.next();
-      if (pooledConnection.shouldTrim(usedSince, createdSince)) {
-        iterator.remove();
-        pooledConnection.closeConnectionFully(true);
-        trimCount++;
+    final int end = size - minSize;
+    if (end <= 0) {
+      return 0;
+    }
+    int idle = 0;
+    while (idle < end && buffer[idle].shouldTrim(usedSince, 0)) {
+      buffer[idle++].closeConnectionFully(true);
+    }
+    int keep = 0;
+    int from = idle;
+    if (createdSince > 0) {
+      for (int i = idle; i < end; i++) {
+        final PooledConnection pooledConnection = buffer[i];
+        if (pooledConnection.shouldTrim(0, createdSince)) {
+          pooledConnection.closeConnectionFully(true);
+        } else {
+          buffer[keep++] = pooledConnection;
+        }
       }
+      from = end;
+    }
+    final int trimCount = from - keep;
+    if (trimCount > 0) {
+      System.arraycopy(buffer, from, buffer, keep, size - from);
+      clear(size - trimCount);
     }
     return trimCount;
   }
+
+  /**
+   * Clear the slots from newSize to the current size such that removed connections are not retained.
+   */
+  private void clear(int newSize) {
+    Arrays.fill(buffer, newSize, size, null);
+    size = newSize;
+  }
 }
@@ -0,0 +1,99 @@
+package io.ebean.datasource.pool;
+
+/**
+ * A count-min sketch estimating the usage frequency of the statement cache keys.
+ * <p>
+ * Each long holds sixteen 4-bit counters (so frequencies saturate at 15) and an item
+ * is counted in four counters, one per hash function, within the same group of four
+ * counters of different longs. The frequency is the minimum of its four counters.
+ * When the number of increments reaches the sample size all counters are halved
+ * such that the frequencies reflect recent usage.
+ * <p>
+ * Adapted from the FrequencySketch of Caffeine (https://github.com/ben-manes/caffeine)
+ * by Ben Manes, licensed under the Apache License, Version 2.0. See the NOTICE file.
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+
+  /**
+   * Create the sketch for a cache of the given maximum size.
+   */
+  FrequencySketch(int maximumSize) {
+    final int length = Integer.highestOneBit(Math.max(maximumSize, 8) - 1) << 1;
+    this.table = new long[length];
+    this.tableMask = length - 1;
+    this.sampleSize = 10 * Math.max(maximumSize, 8);
+  }
+
+  /**
+   * Return the estimated frequency (0 to 15) of the item with the given hash.
+   */
+  int frequency(int hash) {
+    final int h = spread(hash);
+    final int start = (h & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      final int offset = (start + i) << 2;
+      final int count = (int) ((table[indexOf(h, i)] >>> offset) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Increment the frequency of the item with the given hash.
+   */
+  void increment(int hash) {
+    final int h = spread(hash);
+    final int start = (h & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(h, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    final int offset = counter << 2;
+    final long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halve all the counters (aging the frequencies).
+   */
+  private void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += (h >>> 32);
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
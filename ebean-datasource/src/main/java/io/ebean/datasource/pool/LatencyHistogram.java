@@ -0,0 +1,121 @@
+package io.ebean.datasource.pool;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free, fixed memory histogram of latencies in nanos.
+ * <p>
+ * Log-linear buckets (in the style of HdrHistogram) where each power of 2 is
+ * split into 16 linear sub buckets giving a relative error of at most 1/16.
+ * Values from 0 to 15 nanos have a bucket each and values above the largest
+ * bucket (2^43 nanos, about 146 minutes) are recorded in the largest bucket.
+ * <p>
+ * Recording does not allocate and does not require a lock.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BITS = 4;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int MAX_MSB = 42;
+
+  /**
+   * The number of buckets.
+   */
+  static final int BUCKETS = SUB_COUNT + (MAX_MSB - SUB_BITS + 1) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Record the latency in nanos.
+   */
+  void record(long nanos) {
+    counts.incrementAndGet(bucket(nanos));
+  }
+
+  /**
+   * Return the counts per bucket optionally resetting them.
+   * <p>
+   * Latencies recorded concurrently are included in this snapshot or the next.
+   */
+  long[] snapshot(boolean reset) {
+    final long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+    }
+    return snapshot;
+  }
+
+  /**
+   * Copy the counts per bucket into the given array (without allocating).
+   */
+  void snapshotInto(long[] snapshot) {
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+    }
+  }
+
+  /**
+   * Return the bucket index for the value.
+   */
+  static int bucket(long nanos) {
+    if (nanos < SUB_COUNT) {
+      return nanos < 0 ? 0 : (int) nanos;
+    }
+    final int msb = 63 - Long.numberOfLeadingZeros(nanos);
+    if (msb > MAX_MSB) {
+      return BUCKETS - 1;
+    }
+    final int shift = msb - SUB_BITS;
+    final int sub = (int) (nanos >>> shift) & (SUB_COUNT - 1);
+    return SUB_COUNT + shift * SUB_COUNT + sub;
+  }
+
+  /**
+   * Return the highest value (in nanos) recorded in the bucket.
+   */
+  static long upperBound(int bucket) {
+    if (bucket < SUB_COUNT) {
+      return bucket;
+    }
+    final int shift = (bucket - SUB_COUNT) / SUB_COUNT;
+    final long sub = (bucket - SUB_COUNT) % SUB_COUNT;
+    return ((SUB_COUNT + sub + 1) << shift) - 1;
+  }
+
+  /**
+   * Return the value (in nanos) at the given percentile (0 to 100) of the bucket counts.
+   */
+  static long percentile(long[] snapshot, double percentile) {
+    long total = 0;
+    for (long count : snapshot) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long cumulative = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      cumulative += snapshot[i];
+      if (cumulative >= rank) {
+        return upperBound(i);
+      }
+    }
+    return upperBound(snapshot.length - 1);
+  }
+
+  /**
+   * Return the non empty bucket counts keyed by the bucket upper bound in nanos.
+   */
+  static SortedMap<Long, Long> buckets(long[] snapshot) {
+    final SortedMap<Long, Long> buckets = new TreeMap<>();
+    for (int i = 0; i < snapshot.length; i++) {
+      if (snapshot[i] > 0) {
+        buckets.put(upperBound(i), snapshot[i]);
+      }
+    }
+    return buckets;
+  }
+}
@@ -0,0 +1,111 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.ConnectionLeak;
+import io.ebean.datasource.DataSourcePoolListener;
+
+import java.util.List;
+
+/**
+ * Reports (and optionally reclaims) busy connections held for longer than leakDetectionMillis.
+ * <p>
+ * Run on each heartbeat. The busy connections are checked under the queue lock
+ * (comparing start times only) and each suspected leak is described, logged and
+ * passed to the listener outside the lock. A connection is reported once for
+ * each time it is obtained.
+ */
+final class LeakDetector {
+
+  private final ConnectionPool pool;
+  private final PooledConnectionQueue queue;
+  private final DataSourcePoolListener listener;
+  private final long leakDetectionMillis;
+  private final boolean reclaim;
+
+  LeakDetector(ConnectionPool pool, PooledConnectionQueue queue, DataSourcePoolListener listener, long leakDetectionMillis, boolean reclaim) {
+    this.pool = pool;
+    this.queue = queue;
+    this.listener = listener;
+    this.leakDetectionMillis = leakDetectionMillis;
+    this.reclaim = reclaim;
+  }
+
+  /**
+   * Check for busy connections held for longer than leakDetectionMillis.
+   */
+  void run() {
+    final long now = pool.clock().millis();
+    final List<PooledConnection> suspects = queue.leakSuspects(now - leakDetectionMillis, reclaim);
+    for (PooledConnection pc : suspects) {
+      final Leak leak = new Leak(pool.name(), pc, now - pc.startUseTime(), reclaim);
+      Log.warn("DataSource [{0}] suspected connection leak {1}", pool.name(), leak);
+      if (listener != null) {
+        try {
+          listener.onLeakSuspected(leak);
+        } catch (Exception e) {
+          Log.error("Error notifying listener of suspected connection leak " + pc.name(), e);
+        }
+      }
+    }
+  }
+
+  static final class Leak implements ConnectionLeak {
+
+    private final String poolName;
+    private final String connectionName;
+    private final long heldMillis;
+    private final String lastStatement;
+    private final String callSite;
+    private final String description;
+    private final boolean reclaimed;
+
+    Leak(String poolName, PooledConnection pc, long heldMillis, boolean reclaimed) {
+      this.poolName = poolName;
+      this.connectionName = pc.name();
+      this.heldMillis = heldMillis;
+      this.lastStatement = pc.lastStatement();
+      this.callSite = pc.callSite() == null ? null : pc.callSite().callSite();
+      this.description = pc.fullDescription();
+      this.reclaimed = reclaimed;
+    }
+
+    @Override
+    public String toString() {
+      return "heldMillis[" + heldMillis + "] reclaimed[" + reclaimed + "] callSite[" + callSite + "] " + description;
+    }
+
+    @Override
+    public String poolName() {
+      return poolName;
+    }
+
+    @Override
+    public String connectionName() {
+      return connectionName;
+    }
+
+    @Override
+    public long heldMillis() {
+      return heldMillis;
+    }
+
+    @Override
+    public String lastStatement() {
+      return lastStatement;
+    }
+
+    @Override
+    public String callSite() {
+      return callSite;
+    }
+
+    @Override
+    public String description() {
+      return description;
+    }
+
+    @Override
+    public boolean reclaimed() {
+      return reclaimed;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package io.ebean.datasource.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the effective maximum size of the pool between min and max connections.
+ * <p>
+ * Run on each heartbeat. Demand is the peak busy connections plus the waiting
+ * threads over the heartbeat interval and is smoothed using an EWMA. The p99
+ * acquire time of the interval is taken from the acquire histogram. The pool
+ * grows when the p99 acquire time exceeds the target and shrinks gradually
+ * when it is well below the target and the smoothed demand is well below
+ * the current size (hysteresis such that the size does not oscillate). Changes
+ * are limited to one per cool down period.
+ * <p>
+ * The queue counters and histogram are read directly into reused arrays such that
+ * the heartbeat does not build (and allocate) the pool status.
+ */
+final class PoolAutoScaler {
+
+  /**
+   * Weight of the latest sample in the demand EWMA.
+   */
+  private static final double ALPHA = 0.3;
+  /**
+   * Size the pool with some headroom above the smoothed demand.
+   */
+  private static final double HEADROOM = 1.25;
+
+  private final ConnectionPool pool;
+  private final PooledConnectionQueue queue;
+  private final long targetWaitMicros;
+  private final long cooldownMillis;
+
+  private double demand = -1;
+  private long lastChange;
+  private long[] buckets = new long[LatencyHistogram.BUCKETS];
+  private long[] lastBuckets = new long[LatencyHistogram.BUCKETS];
+  private final long[] delta = new long[LatencyHistogram.BUCKETS];
+
+  PoolAutoScaler(ConnectionPool pool, PooledConnectionQueue queue, long targetWaitMillis, long cooldownSecs) {
+    this.pool = pool;
+    this.queue = queue;
+    this.targetWaitMicros = TimeUnit.MILLISECONDS.toMicros(targetWaitMillis);
+    this.cooldownMillis = TimeUnit.SECONDS.toMillis(cooldownSecs);
+  }
+
+  /**
+   * Sample the pool statistics and adjust the effective maximum size if required.
+   */
+  void run() {
+    final int peak = queue.sampleBusyPeak();
+    queue.acquireBuckets(buckets);
+    final long p99Micros = LatencyHistogram.percentile(delta(buckets, lastBuckets, delta), 99) / 1000;
+    final long[] last = lastBuckets;
+    lastBuckets = buckets;
+    buckets = last;
+
+    final int current = queue.maxSize();
+    final int lower = Math.max(pool.minSize(), pool.reservedHighPriority() + 1);
+    final int upper = pool.maxSize();
+    final int target = target(pool.clock().millis(), current, lower, upper, peak + queue.waiting(), p99Micros);
+    if (target != current) {
+      Log.info("DataSource [{0}] autoscale maxSize from [{1}] to [{2}] demand[{3}] p99Acquire[{4}ms]",
+        pool.name(), current, target, Math.round(demand), TimeUnit.MICROSECONDS.toMillis(p99Micros));
+      queue.setMaxSize(target);
+    }
+  }
+
+  /**
+   * Return the acquires recorded since the last sample (written into delta).
+   */
+  private static long[] delta(long[] buckets, long[] last, long[] delta) {
+    for (int i = 0; i < buckets.length; i++) {
+      if (buckets[i] < last[i]) {
+        // the statistics have been reset
+        return buckets;
+      }
+      delta[i] = buckets[i] - last[i];
+    }
+    return delta;
+  }
+
+  /**
+   * Return the new target size given the demand and p99 acquire time of the last interval.
+   */
+  int target(long now, int current, int lower, int upper, int demandSample, long p99Micros) {
+    demand = demand < 0 ? demandSample : ALPHA * demandSample + (1 - ALPHA) * demand;
+    final int bounded = Math.max(lower, Math.min(upper, current));
+    if (bounded != current) {
+      // min or max connections changed, move into range immediately
+      lastChange = now;
+      return bounded;
+    }
+    if (now - lastChange < cooldownMillis) {
+      return current;
+    }
+    final int sized = (int) Math.ceil(demand * HEADROOM);
+    int target = current;
+    if (p99Micros > targetWaitMicros) {
+      target = Math.min(upper, Math.max(current + 1, sized));
+    } else if (p99Micros < targetWaitMicros / 2 && demand < current / 2.0) {
+      // shrink by at most a quarter of the current size per change
+      target = Math.max(lower, Math.max(sized, current - Math.max(1, current / 4)));
+    }
+    if (target != current) {
+      lastChange = now;
+    }
+    return target;
+  }
+}
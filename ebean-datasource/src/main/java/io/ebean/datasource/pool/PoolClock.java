@@ -0,0 +1,109 @@
+package io.ebean.datasource.pool;
+
+/**
+ * The millisecond clock used for the pool timestamps.
+ * <p>
+ * The last used, creation, stale, maxAge and trim times all read this clock. The
+ * coarse clock is updated by its own thread (started with the heartbeat) such that
+ * obtaining and returning connections reads a volatile rather than calling
+ * System.currentTimeMillis() and a blocked heartbeat does not stop the clock, and
+ * the virtual clock is moved explicitly such that time based behaviour is deterministic.
+ */
+abstract class PoolClock {
+
+  private static final PoolClock SYSTEM = new SystemClock();
+
+  /**
+   * Return the clock that calls System.currentTimeMillis().
+   */
+  static PoolClock system() {
+    return SYSTEM;
+  }
+
+  /**
+   * Return a clock updated at the given resolution by a clock thread started with the heartbeat.
+   */
+  static PoolClock coarse(int resolutionMillis) {
+    return new CoarseClock(resolutionMillis);
+  }
+
+  /**
+   * Return a clock that is only moved explicitly via {@link VirtualClock#advance(long)}.
+   */
+  static VirtualClock virtual(long startMillis) {
+    return new VirtualClock(startMillis);
+  }
+
+  /**
+   * Return the current time in millis.
+   */
+  abstract long millis();
+
+  /**
+   * Return the frequency in millis at which {@link #tick()} should be called, 0 when the clock does not tick.
+   */
+  int tickMillis() {
+    return 0;
+  }
+
+  /**
+   * Update the current time.
+   */
+  void tick() {
+    // do nothing by default
+  }
+
+  private static final class SystemClock extends PoolClock {
+
+    @Override
+    long millis() {
+      return System.currentTimeMillis();
+    }
+  }
+
+  private static final class CoarseClock extends PoolClock {
+
+    private final int resolutionMillis;
+    private volatile long millis = System.currentTimeMillis();
+
+    private CoarseClock(int resolutionMillis) {
+      this.resolutionMillis = resolutionMillis;
+    }
+
+    @Override
+    long millis() {
+      return millis;
+    }
+
+    @Override
+    int tickMillis() {
+      return resolutionMillis;
+    }
+
+    @Override
+    void tick() {
+      millis = System.currentTimeMillis();
+    }
+  }
+
+  static final class VirtualClock extends PoolClock {
+
+    private volatile long millis;
+
+    private VirtualClock(long startMillis) {
+      this.millis = startMillis;
+    }
+
+    @Override
+    long millis() {
+      return millis;
+    }
+
+    /**
+     * Move the clock forward by the given millis.
+     */
+    void advance(long deltaMillis) {
+      millis += deltaMillis;
+    }
+  }
+}
@@ -0,0 +1,360 @@
+package io.ebean.datasource.pool;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the pool operations.
+ * <p>
+ * Each event is only created, populated and committed when its event type is
+ * enabled in a recording, otherwise the cost is the check of the event type being
+ * enabled (no event is allocated). When the jdk.jfr module is not present (it is
+ * an optional dependency) no events are created.
+ * <p>
+ * Busy and free sizes are read without taking the queue lock and are approximate
+ * for events emitted outside the lock.
+ */
+final class PoolEvents {
+
+  private static final boolean AVAILABLE = available();
+
+  private static boolean available() {
+    try {
+      Class.forName("jdk.jfr.Event", false, PoolEvents.class.getClassLoader());
+      // registers the event types
+      return Types.BORROW != null;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * The event types, only loaded when jdk.jfr is present.
+   */
+  private static final class Types {
+    static final EventType BORROW = EventType.getEventType(Borrow.class);
+    static final EventType RETURN = EventType.getEventType(Return.class);
+    static final EventType GROW = EventType.getEventType(Grow.class);
+    static final EventType TRIM = EventType.getEventType(Trim.class);
+    static final EventType VALIDATION = EventType.getEventType(Validation.class);
+    static final EventType STALE_EVICTION = EventType.getEventType(StaleEviction.class);
+    static final EventType CLOSE = EventType.getEventType(Close.class);
+    static final EventType RESET = EventType.getEventType(Reset.class);
+    static final EventType EXHAUSTED = EventType.getEventType(Exhausted.class);
+  }
+
+  private PoolEvents() {
+  }
+
+  /**
+   * A connection was obtained from the pool after waiting waitNanos.
+   */
+  static void borrowed(ConnectionPool pool, PooledConnection c, long waitNanos) {
+    if (AVAILABLE && Types.BORROW.isEnabled()) {
+      final Borrow event = new Borrow();
+      if (event.shouldCommit()) {
+        event.pool = pool.name();
+        event.connection = c.name();
+        event.waitTime = waitNanos;
+        event.busy = pool.approxBusy();
+        event.free = pool.approxFree();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * A connection was returned to the pool after being held for holdNanos.
+   */
+  static void returned(ConnectionPool pool, PooledConnection c, long holdNanos) {
+    if (AVAILABLE && Types.RETURN.isEnabled()) {
+      final Return event = new Return();
+      if (event.shouldCommit()) {
+        event.pool = pool.name();
+        event.connection = c.name();
+        event.holdTime = holdNanos;
+        event.busy = pool.approxBusy();
+        event.free = pool.approxFree();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * A new connection was created taking connectNanos.
+   */
+  static void grow(ConnectionPool pool, PooledConnection c, long connectNanos) {
+    if (AVAILABLE && Types.GROW.isEnabled()) {
+      final Grow event = new Grow();
+      if (event.shouldCommit()) {
+        event.pool = pool.name();
+        event.connection = c.name();
+        event.connectTime = connectNanos;
+        event.busy = pool.approxBusy();
+        event.free = pool.approxFree();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Idle or old free connections were trimmed.
+   */
+  static void trimmed(ConnectionPool pool, int trimmed) {
+    if (AVAILABLE && Types.TRIM.isEnabled()) {
+      final Trim event = new Trim();
+      if (event.shouldCommit()) {
+        event.pool = pool.name();
+        event.trimmed = trimmed;
+        event.busy = pool.approxBusy();
+        event.free = pool.approxFree();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * A connection was validated taking validationNanos.
+   */
+  static void validated(ConnectionPool pool, PooledConnection c, boolean valid, long validationNanos) {
+    if (AVAILABLE && Types.VALIDATION.isEnabled()) {
+      final Validation event = new Validation();
+      if (event.shouldCommit()) {
+        event.pool = pool.name();
+        event.connection = c.name();
+        event.valid = valid;
+        event.validationTime = validationNanos;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * A stale connection failed validation and was removed from the pool.
+   */
+  static void staleEvicted(ConnectionPool pool, PooledConnection c, long idleMillis) {
+    if (AVAILABLE && Types.STALE_EVICTION.isEnabled()) {
+      final StaleEviction event = new StaleEviction();
+      if (event.shouldCommit()) {
+        event.pool = pool.name();
+        event.connection = c.name();
+        event.idleTime = idleMillis;
+        event.busy = pool.approxBusy();
+        event.free = pool.approxFree();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * A connection was fully closed (asynchronously) taking closeNanos.
+   */
+  static void closed(ConnectionPool pool, PooledConnection c, String reason, long closeNanos) {
+    if (AVAILABLE && Types.CLOSE.isEnabled()) {
+      final Close event = new Close();
+      if (event.shouldCommit()) {
+        event.pool = pool.name();
+        event.connection = c.name();
+        event.reason = reason;
+        event.closeTime = closeNanos;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * The pool was reset.
+   */
+  static void reset(ConnectionPool pool) {
+    if (AVAILABLE && Types.RESET.isEnabled()) {
+      final Reset event = new Reset();
+      if (event.shouldCommit()) {
+        event.pool = pool.name();
+        event.busy = pool.approxBusy();
+        event.free = pool.approxFree();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * A borrower timed out after waiting waitNanos for a connection.
+   */
+  static void exhausted(ConnectionPool pool, long waitNanos, int waiting, int maxSize) {
+    if (AVAILABLE && Types.EXHAUSTED.isEnabled()) {
+      final Exhausted event = new Exhausted();
+      if (event.shouldCommit()) {
+        event.pool = pool.name();
+        event.waitTime = waitNanos;
+        event.busy = pool.approxBusy();
+        event.waiting = waiting;
+        event.maxSize = maxSize;
+        event.commit();
+      }
+    }
+  }
+
+  @Name("io.ebean.datasource.Borrow")
+  @Label("Connection Borrow")
+  @Description("A connection was obtained from the pool")
+  @Category({"Ebean", "DataSource"})
+  @StackTrace(false)
+  static final class Borrow extends Event {
+    @Label("Pool")
+    String pool;
+    @Label("Connection")
+    String connection;
+    @Label("Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long waitTime;
+    @Label("Busy")
+    int busy;
+    @Label("Free")
+    int free;
+  }
+
+  @Name("io.ebean.datasource.Return")
+  @Label("Connection Return")
+  @Description("A connection was returned to the pool")
+  @Category({"Ebean", "DataSource"})
+  @StackTrace(false)
+  static final class Return extends Event {
+    @Label("Pool")
+    String pool;
+    @Label("Connection")
+    String connection;
+    @Label("Hold Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long holdTime;
+    @Label("Busy")
+    int busy;
+    @Label("Free")
+    int free;
+  }
+
+  @Name("io.ebean.datasource.Grow")
+  @Label("Pool Grow")
+  @Description("A new connection was created")
+  @Category({"Ebean", "DataSource"})
+  @StackTrace(false)
+  static final class Grow extends Event {
+    @Label("Pool")
+    String pool;
+    @Label("Connection")
+    String connection;
+    @Label("Connect Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long connectTime;
+    @Label("Busy")
+    int busy;
+    @Label("Free")
+    int free;
+  }
+
+  @Name("io.ebean.datasource.Trim")
+  @Label("Pool Trim")
+  @Description("Idle or old free connections were closed")
+  @Category({"Ebean", "DataSource"})
+  @StackTrace(false)
+  static final class Trim extends Event {
+    @Label("Pool")
+    String pool;
+    @Label("Trimmed")
+    int trimmed;
+    @Label("Busy")
+    int busy;
+    @Label("Free")
+    int free;
+  }
+
+  @Name("io.ebean.datasource.Validation")
+  @Label("Connection Validation")
+  @Description("A connection was validated")
+  @Category({"Ebean", "DataSource"})
+  @StackTrace(false)
+  static final class Validation extends Event {
+    @Label("Pool")
+    String pool;
+    @Label("Connection")
+    String connection;
+    @Label("Valid")
+    boolean valid;
+    @Label("Validation Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long validationTime;
+  }
+
+  @Name("io.ebean.datasource.StaleEviction")
+  @Label("Stale Connection Eviction")
+  @Description("A stale connection failed validation and was removed from the pool")
+  @Category({"Ebean", "DataSource"})
+  @StackTrace(false)
+  static final class StaleEviction extends Event {
+    @Label("Pool")
+    String pool;
+    @Label("Connection")
+    String connection;
+    @Label("Idle Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long idleTime;
+    @Label("Busy")
+    int busy;
+    @Label("Free")
+    int free;
+  }
+
+  @Name("io.ebean.datasource.Close")
+  @Label("Connection Close")
+  @Description("A connection was fully closed")
+  @Category({"Ebean", "DataSource"})
+  @StackTrace(false)
+  static final class Close extends Event {
+    @Label("Pool")
+    String pool;
+    @Label("Connection")
+    String connection;
+    @Label("Reason")
+    String reason;
+    @Label("Close Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long closeTime;
+  }
+
+  @Name("io.ebean.datasource.Reset")
+  @Label("Pool Reset")
+  @Description("The pool was reset closing the free connections")
+  @Category({"Ebean", "DataSource"})
+  @StackTrace(false)
+  static final class Reset extends Event {
+    @Label("Pool")
+    String pool;
+    @Label("Busy")
+    int busy;
+    @Label("Free")
+    int free;
+  }
+
+  @Name("io.ebean.datasource.Exhausted")
+  @Label("Pool Exhausted")
+  @Description("A borrower timed out waiting for a connection")
+  @Category({"Ebean", "DataSource"})
+  static final class Exhausted extends Event {
+    @Label("Pool")
+    String pool;
+    @Label("Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long waitTime;
+    @Label("Busy")
+    int busy;
+    @Label("Waiting")
+    int waiting;
+    @Label("Max Size")
+    int maxSize;
+  }
+}
@@ -0,0 +1,233 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourcePoolMXBean;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+
+/**
+ * The platform MBean of a ConnectionPool.
+ * <p>
+ * The attributes are read individually from the queue without taking the lock
+ * such that frequent polling by JMX scrapers does not contend with borrowers.
+ * The percentile attributes read a snapshot of their histogram only.
+ */
+final class PoolManagement implements DataSourcePoolMXBean {
+
+  private final ConnectionPool pool;
+  private final PooledConnectionQueue queue;
+  private final ObjectName objectName;
+
+  private PoolManagement(ConnectionPool pool, PooledConnectionQueue queue, ObjectName objectName) {
+    this.pool = pool;
+    this.queue = queue;
+    this.objectName = objectName;
+  }
+
+  /**
+   * Register the MBean for the pool returning null if it could not be registered.
+   */
+  static PoolManagement register(ConnectionPool pool, PooledConnectionQueue queue) {
+    try {
+      final ObjectName objectName = new ObjectName("io.ebean.datasource:type=DataSourcePool,name=" + ObjectName.quote(pool.name()));
+      final PoolManagement management = new PoolManagement(pool, queue, objectName);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(management, objectName);
+      return management;
+    } catch (JMException e) {
+      Log.warn("DataSource [{0}] unable to register MBean: {1}", pool.name(), e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Unregister the MBean.
+   */
+  void unregister() {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      Log.warn("DataSource [{0}] unable to unregister MBean: {1}", pool.name(), e.toString());
+    }
+  }
+
+  private long acquireMicros(double percentile) {
+    return LatencyHistogram.percentile(queue.acquireBuckets(), percentile) / 1000;
+  }
+
+  @Override
+  public String getName() {
+    return pool.name();
+  }
+
+  @Override
+  public boolean isOnline() {
+    return pool.isOnline();
+  }
+
+  @Override
+  public int getMinSize() {
+    return pool.minSize();
+  }
+
+  @Override
+  public int getMaxSize() {
+    return queue.maxSize();
+  }
+
+  @Override
+  public void setMaxSize(int maxSize) {
+    pool.setMaxSize(maxSize);
+  }
+
+  @Override
+  public int getFree() {
+    return queue.free();
+  }
+
+  @Override
+  public int getBusy() {
+    return queue.busy();
+  }
+
+  @Override
+  public int getWaiting() {
+    return queue.waiting();
+  }
+
+  @Override
+  public int getHighWaterMark() {
+    return queue.highWaterMark();
+  }
+
+  @Override
+  public int getWaitCount() {
+    return queue.waitCount();
+  }
+
+  @Override
+  public int getHitCount() {
+    return queue.hitCount();
+  }
+
+  @Override
+  public long getTotalAcquireMicros() {
+    return queue.totalAcquireNanos() / 1000;
+  }
+
+  @Override
+  public long getTotalWaitMicros() {
+    return queue.totalWaitNanos() / 1000;
+  }
+
+  @Override
+  public long getMaxAcquireMicros() {
+    return queue.maxAcquireNanos() / 1000;
+  }
+
+  @Override
+  public long getMeanAcquireNanos() {
+    final int hitCount = queue.hitCount();
+    return hitCount == 0 ? 0 : queue.totalAcquireNanos() / hitCount;
+  }
+
+  @Override
+  public long getP50AcquireMicros() {
+    return acquireMicros(50);
+  }
+
+  @Override
+  public long getP90AcquireMicros() {
+    return acquireMicros(90);
+  }
+
+  @Override
+  public long getP99AcquireMicros() {
+    return acquireMicros(99);
+  }
+
+  @Override
+  public long getP999AcquireMicros() {
+    return acquireMicros(99.9);
+  }
+
+  @Override
+  public long getP99HoldMicros() {
+    return LatencyHistogram.percentile(queue.holdBuckets(), 99) / 1000;
+  }
+
+  @Override
+  public long getMaxHoldMicros() {
+    return queue.maxHoldNanos() / 1000;
+  }
+
+  @Override
+  public long getLongHoldCount() {
+    return queue.longHoldCount();
+  }
+
+  @Override
+  public long getPscHit() {
+    return pool.pscHit();
+  }
+
+  @Override
+  public long getPscMiss() {
+    return pool.pscMiss();
+  }
+
+  @Override
+  public long getPscRem() {
+    return pool.pscRem();
+  }
+
+  @Override
+  public long getPscRej() {
+    return pool.pscRej();
+  }
+
+  @Override
+  public long getCscHit() {
+    return pool.cscHit();
+  }
+
+  @Override
+  public long getCscMiss() {
+    return pool.cscMiss();
+  }
+
+  @Override
+  public long getCscRem() {
+    return pool.cscRem();
+  }
+
+  @Override
+  public long getCscRej() {
+    return pool.cscRej();
+  }
+
+  @Override
+  public void offline() {
+    pool.offline();
+  }
+
+  @Override
+  public void online() throws SQLException {
+    pool.online();
+  }
+
+  @Override
+  public void reset() {
+    pool.reset();
+  }
+
+  @Override
+  public String dumpBusyConnections() {
+    return pool.busyConnectionInformation();
+  }
+}
@@ -1,11 +1,14 @@
 package io.ebean.datasource.pool;
 
+import java.lang.ref.WeakReference;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static io.ebean.datasource.pool.PstmtKey.NO_FLAG;
+
 /**
  * Is a connection that belongs to a DataSourcePool.
  * <p>
@@ -87,12 +90,21 @@ final class PooledConnection extends ConnectionDelegator {
   private final ConnectionPool pool;
   private final Connection connection;
   private final long creationTime;
+  /**
+   * System time of creation compared with the last reset time. Not read from the
+   * (possibly coarse) pool clock such that connections created just after a reset
+   * are not closed as created before it.
+   */
+  private final long createdSystemMillis;
   private final PstmtCache pstmtCache;
+  private final PstmtCache cstmtCache;
   private final ReentrantLock lock = new ReentrantLock();
   /**
    * The status of the connection. IDLE, ACTIVE or ENDED.
+   * <p>
+   * Volatile as leak detection reads it without the lock of the thread using the connection.
    */
-  private int status = STATUS_IDLE;
+  private volatile int status = STATUS_IDLE;
   /**
    * The reason for a connection closing.
    */
@@ -116,12 +128,15 @@ final class PooledConnection extends ConnectionDelegator {
   // this is used for cache computation
   private String cacheKeySchema = UNKNOWN;
   private String cacheKeyCatalog = UNKNOWN;
+  // reused for cache lookups under the lock
+  private final PstmtKey lookupKey = new PstmtKey();
 
   // original values are lazily initialized and restored on close()
   private String originalSchema;
   private String originalCatalog;
 
   private long startUseTime;
+  private long startUseNanos;
   private long lastUseTime;
   /**
    * The last statement executed by this connection.
@@ -132,11 +147,42 @@ final class PooledConnection extends ConnectionDelegator {
    */
   private String createdByMethod;
   private StackTraceElement[] stackTrace;
+  private CallSite callSite;
+  /**
+   * The thread that obtained the connection when its stack trace was not sampled.
+   * <p>
+   * Weakly referenced and cleared once its stack trace is captured by the heartbeat.
+   */
+  private volatile WeakReference<Thread> holder;
+  /**
+   * True when the stackTrace is that of the holder captured when the hold crossed longHoldMillis.
+   */
+  private boolean holderStackTrace;
+  /**
+   * True when the connection has been reported as a suspected leak.
+   */
+  private boolean leakReported;
+  /**
+   * Incremented each time the connection is obtained from the pool.
+   * <p>
+   * Volatile as this is read by the Cleaner thread when reclaiming an unreachable handle.
+   */
+  private volatile long borrowCount;
   private final int maxStackTrace;
   /**
    * Slot position in the BusyConnectionBuffer.
    */
   private int slotId;
+  /**
+   * State used by the lock free ConnectionBag.
+   */
+  volatile int bagState;
+  /**
+   * True when registered in the ConnectionBag shared list.
+   * <p>
+   * Volatile as this is written by the returning thread (and when purged) without the queue lock.
+   */
+  volatile boolean bagMember;
 
 
   /**
@@ -163,9 +209,11 @@ final class PooledConnection extends ConnectionDelegator {
       this.catalogState = SCHEMA_CATALOG_KNOWN;
       this.cacheKeyCatalog = originalCatalog;
     }
-    this.pstmtCache = new PstmtCache(pool.pstmtCacheSize());
+    this.pstmtCache = new PstmtCache(pool.pstmtCacheSize(), pool.statementCachePolicy(), pool.pstmtCacheMetrics());
+    this.cstmtCache = new PstmtCache(pool.cstmtCacheSize(), pool.statementCachePolicy(), pool.cstmtCacheMetrics());
     this.maxStackTrace = pool.maxStackTraceSize();
-    this.creationTime = System.currentTimeMillis();
+    this.creationTime = pool.clock().millis();
+    this.createdSystemMillis = System.currentTimeMillis();
     this.lastUseTime = creationTime;
     pool.inc();
   }
@@ -179,8 +227,10 @@ final class PooledConnection extends ConnectionDelegator {
     this.pool = null;
     this.connection = null;
     this.pstmtCache = null;
+    this.cstmtCache = null;
     this.maxStackTrace = 0;
     this.creationTime = System.currentTimeMillis();
+    this.createdSystemMillis = creationTime;
     this.lastUseTime = creationTime;
   }
 
@@ -211,7 +261,7 @@ final class PooledConnection extends ConnectionDelegator {
   }
 
   private long busySeconds() {
-    return (System.currentTimeMillis() - startUseTime) / 1000;
+    return (pool.clock().millis() - startUseTime) / 1000;
   }
 
   String description() {
@@ -219,7 +269,15 @@ final class PooledConnection extends ConnectionDelegator {
   }
 
   String fullDescription() {
-    return "name[" + name + "] startTime[" + startUseTime() + "] busySeconds[" + busySeconds() + "] stackTrace[" + stackTraceAsString(stackTrace) + "] stmt[" + lastStatement() + "]";
+    return "name[" + name + "] startTime[" + startUseTime() + "] busySeconds[" + busySeconds() + "] " + stackTraceDescription() + " stmt[" + lastStatement() + "]";
+  }
+
+  /**
+   * Return the stack trace captured when obtaining the connection or, when not sampled,
+   * the stack trace of the holder captured when the hold crossed longHoldMillis.
+   */
+  private String stackTraceDescription() {
+    return (holderStackTrace ? "holderStackTrace[" : "stackTrace[") + stackTraceAsString(stackTrace) + "]";
   }
 
   /**
@@ -232,13 +290,13 @@ final class PooledConnection extends ConnectionDelegator {
    * @param logErrors if false then don't log errors when closing
    */
   void closeConnectionFully(boolean logErrors) {
+    bagState = ConnectionBag.STATE_CLOSED;
     if (Log.isLoggable(System.Logger.Level.TRACE)) {
-      Log.trace("Closing Connection[{0}] reason[{1}], pstmtStats: {2}", name, closeReason, pstmtCache.description());
+      Log.trace("Closing Connection[{0}] reason[{1}], pstmtStats: {2} cstmtStats: {3}", name, closeReason, pstmtCache.description(), cstmtCache.description());
     }
     if (pool == null) {
       return; // this can happen in tests only.
     }
-    pool.pstmtCacheMetrics(pstmtCache);
     pool.closeConnectionFullyAsync(this, logErrors);
   }
 
@@ -287,7 +345,9 @@ final class PooledConnection extends ConnectionDelegator {
         }
       }
     } finally {
-      long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      final long closeNanos = System.nanoTime() - start;
+      PoolEvents.closed(pool, this, closeReason, closeNanos);
+      long millis = TimeUnit.NANOSECONDS.toMillis(closeNanos);
       if (millis > 500) {
         Log.warn("Closing connection [" + fullDescription() + "] took an unexpected long time of " + millis + " ms");
       }
@@ -300,6 +360,9 @@ final class PooledConnection extends ConnectionDelegator {
       for (ExtendedPreparedStatement ps : pstmtCache.values()) {
         ps.closeDestroy();
       }
+      for (ExtendedPreparedStatement cs : cstmtCache.values()) {
+        cs.closeDestroy();
+      }
 
     } finally {
       lock.unlock();
@@ -341,9 +404,20 @@ final class PooledConnection extends ConnectionDelegator {
    * Return a PreparedStatement back into the cache.
    */
   void returnPreparedStatement(ExtendedPreparedStatement pstmt) {
+    returnStatement(pstmtCache, pstmt);
+  }
+
+  /**
+   * Return a CallableStatement back into the cache.
+   */
+  void returnCallableStatement(ExtendedCallableStatement cstmt) {
+    returnStatement(cstmtCache, cstmt);
+  }
+
+  private void returnStatement(PstmtCache cache, ExtendedPreparedStatement pstmt) {
     lock.lock();
     try {
-      if (!pstmtCache.returnStatement(pstmt)) {
+      if (!cache.returnStatement(pstmt)) {
         try {
           // Already an entry in the cache with the exact same SQL...
           pstmt.closeDestroy();
@@ -361,8 +435,7 @@ final class PooledConnection extends ConnectionDelegator {
    */
   @Override
   public PreparedStatement prepareStatement(String sql, int returnKeysFlag) throws SQLException {
-    String key = sql + ':' + cacheKeySchema + ':' + cacheKeyCatalog + ':' + returnKeysFlag;
-    return prepareStatement(sql, true, returnKeysFlag, key);
+    return prepareStatement(sql, returnKeysFlag, NO_FLAG, NO_FLAG, NO_FLAG, null, null);
   }
 
   /**
@@ -370,14 +443,49 @@ final class PooledConnection extends ConnectionDelegator {
    */
   @Override
   public PreparedStatement prepareStatement(String sql) throws SQLException {
-    String key = sql + ':' + cacheKeySchema + ':' + cacheKeyCatalog;
-    return prepareStatement(sql, false, 0, key);
+    return prepareStatement(sql, NO_FLAG, NO_FLAG, NO_FLAG, NO_FLAG, null, null);
+  }
+
+  /**
+   * This will try to use a cache of PreparedStatements.
+   */
+  @Override
+  public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+    return prepareStatement(sql, NO_FLAG, resultSetType, resultSetConcurrency, NO_FLAG, null, null);
+  }
+
+  /**
+   * This will try to use a cache of PreparedStatements.
+   */
+  @Override
+  public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    return prepareStatement(sql, NO_FLAG, resultSetType, resultSetConcurrency, resultSetHoldability, null, null);
+  }
+
+  /**
+   * This will try to use a cache of PreparedStatements.
+   */
+  @Override
+  public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+    return prepareStatement(sql, NO_FLAG, NO_FLAG, NO_FLAG, NO_FLAG, columnIndexes, null);
+  }
+
+  /**
+   * This will try to use a cache of PreparedStatements.
+   */
+  @Override
+  public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+    return prepareStatement(sql, NO_FLAG, NO_FLAG, NO_FLAG, NO_FLAG, null, columnNames);
   }
 
   /**
    * This will try to use a cache of PreparedStatements.
+   * <p>
+   * The cache key includes the options of the overload used such that each
+   * distinct combination of sql and options is cached separately.
    */
-  private PreparedStatement prepareStatement(String sql, boolean useFlag, int flag, String cacheKey) throws SQLException {
+  private PreparedStatement prepareStatement(String sql, int flag, int type, int concurrency, int holdability,
+                                             int[] columnIndexes, String[] columnNames) throws SQLException {
     if (status == STATUS_IDLE) {
       throw new SQLException(IDLE_CONNECTION_ACCESSED_ERROR + "prepareStatement()");
     }
@@ -385,18 +493,12 @@ final class PooledConnection extends ConnectionDelegator {
     try {
       lastStatement = sql;
       // try to get a matching cached PStmt from the cache.
+      PstmtKey cacheKey = lookupKey.set(sql, cacheKeySchema, cacheKeyCatalog, flag, type, concurrency, holdability, columnIndexes, columnNames);
       ExtendedPreparedStatement pstmt = pstmtCache.remove(cacheKey);
       if (pstmt != null) {
         return pstmt.reset();
       }
-
-      PreparedStatement actualPstmt;
-      if (useFlag) {
-        actualPstmt = connection.prepareStatement(sql, flag);
-      } else {
-        actualPstmt = connection.prepareStatement(sql);
-      }
-      return new ExtendedPreparedStatement(this, actualPstmt, cacheKey);
+      return new ExtendedPreparedStatement(this, cacheKey.prepare(connection), cacheKey.copy());
     } catch (SQLException ex) {
       markWithError(ex);
       throw ex;
@@ -405,31 +507,48 @@ final class PooledConnection extends ConnectionDelegator {
     }
   }
 
-  @Override
-  public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
-    if (status == STATUS_IDLE) {
-      throw new SQLException(IDLE_CONNECTION_ACCESSED_ERROR + "prepareStatement()");
-    }
-    try {
-      // no caching when creating PreparedStatements this way
-      lastStatement = sql;
-      return connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
-    } catch (SQLException ex) {
-      markWithError(ex);
-      throw ex;
-    }
-  }
-
   /**
    * Reset the connection for returning to the client. Resets the status,
    * startUseTime and hadErrors.
+   * <p>
+   * The status is set last such that the other values are visible to leak
+   * detection once it sees the connection as in use.
    */
   void resetForUse() {
-    this.status = STATUS_ACTIVE;
-    this.startUseTime = System.currentTimeMillis();
+    this.startUseTime = pool.clock().millis();
+    this.startUseNanos = System.nanoTime();
+    this.borrowCount++;
+    this.callSite = null;
+    this.stackTrace = null;
+    this.holderStackTrace = false;
+    this.holder = null;
+    this.leakReported = false;
     this.createdByMethod = null;
     this.lastStatement = null;
     this.hadErrors = false;
+    this.status = STATUS_ACTIVE;
+  }
+
+  /**
+   * Set the start time and clear the leak reported flag when the connection is
+   * registered as busy (under the queue lock).
+   * <p>
+   * It is reset for use later outside the queue lock and leak detection must not
+   * see the start time of its previous use in the meantime.
+   */
+  void markBusy(long now) {
+    this.startUseTime = now;
+    this.leakReported = false;
+  }
+
+  /**
+   * Return true if the connection has been reset for use by the borrower holding it.
+   * <p>
+   * A connection claimed from the bag is not registered again (it remains in the busy
+   * buffer) and until it is reset for use it has the start time of its previous use.
+   */
+  boolean inUse() {
+    return status != STATUS_IDLE;
   }
 
   /**
@@ -457,6 +576,39 @@ final class PooledConnection extends ConnectionDelegator {
     return msg != null && msg.contains("read-only");
   }
 
+  /**
+   * Return the number of times the connection has been obtained from the pool.
+   */
+  long borrowCount() {
+    return borrowCount;
+  }
+
+  /**
+   * Return the connection to the pool when the handle given to the application
+   * became unreachable without being closed.
+   * <p>
+   * Does nothing if the connection has since been returned (and possibly obtained again).
+   */
+  void reclaim(long expectedBorrowCount) {
+    if (status == STATUS_IDLE || borrowCount != expectedBorrowCount || bagState == ConnectionBag.STATE_CLOSED) {
+      return;
+    }
+    Log.warn("DataSource [{0}] reclaiming connection that was not closed {1}", pool.name(), fullDescription());
+    if (status == STATUS_ACTIVE && !autoCommit) {
+      try {
+        rollback();
+      } catch (SQLException e) {
+        // marked with error such that it is validated on return
+        Log.warn("Error rolling back reclaimed connection " + name, e);
+      }
+    }
+    try {
+      closePooledConnection(false);
+    } catch (SQLException | RuntimeException e) {
+      Log.error("Error returning reclaimed connection " + name, e);
+    }
+  }
+
   /**
    * close the connection putting it back into the connection pool.
    * <p>
@@ -475,6 +627,18 @@ final class PooledConnection extends ConnectionDelegator {
     if (status == STATUS_IDLE) {
       throw new SQLException(IDLE_CONNECTION_ACCESSED_ERROR + "close()");
     }
+    final long holdNanos = System.nanoTime() - startUseNanos;
+    holder = null;
+    pool.recordHold(holdNanos);
+    PoolEvents.returned(pool, this, holdNanos);
+    if (callSite != null) {
+      callSite.held(holdNanos);
+    }
+    if (bagState == ConnectionBag.STATE_CLOSED) {
+      // closed by the pool (suspected leak) and already removed from the busy list
+      status = STATUS_IDLE;
+      return;
+    }
     boolean mayHaveUncommittedChanges = !autoCommit && !readOnly && status == STATUS_ACTIVE;
     if (mayHaveUncommittedChanges && pool.enforceCleanClose()) {
       pool.returnConnectionForceClose(this, testPool);
@@ -532,7 +696,7 @@ final class PooledConnection extends ConnectionDelegator {
       }
 
       // the connection is assumed GOOD so put it back in the pool
-      lastUseTime = System.currentTimeMillis();
+      lastUseTime = pool.clock().millis();
       connection.clearWarnings();
       status = STATUS_IDLE;
       pool.returnConnection(this);
@@ -548,7 +712,7 @@ final class PooledConnection extends ConnectionDelegator {
    * Return true if the connection is too old.
    */
   private boolean exceedsMaxAge(long maxAgeMillis) {
-    if (maxAgeMillis > 0 && (creationTime < (System.currentTimeMillis() - maxAgeMillis))) {
+    if (maxAgeMillis > 0 && (creationTime < (pool.clock().millis() - maxAgeMillis))) {
       this.closeReason = REASON_MAXAGE;
       return true;
     }
@@ -556,7 +720,7 @@ final class PooledConnection extends ConnectionDelegator {
   }
 
   boolean shouldTrimOnReturn(long lastResetTime, long maxAgeMillis) {
-    if (creationTime <= lastResetTime) {
+    if (createdSystemMillis <= lastResetTime) {
       this.closeReason = REASON_RESET;
       return true;
     }
@@ -585,7 +749,7 @@ final class PooledConnection extends ConnectionDelegator {
    * <p>
    * Used to detect busy connections that could be leaks.
    */
-  private long startUseTime() {
+  long startUseTime() {
     return startUseTime;
   }
 
@@ -601,7 +765,7 @@ final class PooledConnection extends ConnectionDelegator {
   /**
    * Returns the last sql statement executed.
    */
-  private String lastStatement() {
+  String lastStatement() {
     return lastStatement;
   }
 
@@ -746,22 +910,46 @@ final class PooledConnection extends ConnectionDelegator {
     return connection.nativeSQL(sql);
   }
 
+  /**
+   * This will try to use a cache of CallableStatements.
+   */
   @Override
   public CallableStatement prepareCall(String sql) throws SQLException {
-    if (status == STATUS_IDLE) {
-      throw new SQLException(IDLE_CONNECTION_ACCESSED_ERROR + "prepareCall()");
-    }
-    lastStatement = sql;
-    return connection.prepareCall(sql);
+    return prepareCall(sql, NO_FLAG, NO_FLAG, NO_FLAG);
   }
 
+  /**
+   * This will try to use a cache of CallableStatements.
+   */
+  @Override
+  public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+    return prepareCall(sql, resultSetType, resultSetConcurrency, NO_FLAG);
+  }
+
+  /**
+   * This will try to use a cache of CallableStatements.
+   */
   @Override
-  public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurreny) throws SQLException {
+  public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
     if (status == STATUS_IDLE) {
       throw new SQLException(IDLE_CONNECTION_ACCESSED_ERROR + "prepareCall()");
     }
-    lastStatement = sql;
-    return connection.prepareCall(sql, resultSetType, resultSetConcurreny);
+    lock.lock();
+    try {
+      lastStatement = sql;
+      // try to get a matching cached CallableStatement from the cache.
+      PstmtKey cacheKey = lookupKey.set(sql, cacheKeySchema, cacheKeyCatalog, NO_FLAG, resultSetType, resultSetConcurrency, resultSetHoldability, null, null);
+      ExtendedPreparedStatement cstmt = cstmtCache.remove(cacheKey);
+      if (cstmt != null) {
+        return ((ExtendedCallableStatement) cstmt).reset();
+      }
+      return new ExtendedCallableStatement(this, cacheKey.prepareCall(connection), cacheKey.copy());
+    } catch (SQLException ex) {
+      markWithError(ex);
+      throw ex;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
@@ -898,46 +1086,6 @@ final class PooledConnection extends ConnectionDelegator {
     }
   }
 
-  @Override
-  public PreparedStatement prepareStatement(String s, int i, int x, int y) throws SQLException {
-    try {
-      return connection.prepareStatement(s, i, x, y);
-    } catch (SQLException ex) {
-      markWithError(ex);
-      throw ex;
-    }
-  }
-
-  @Override
-  public PreparedStatement prepareStatement(String s, int[] i) throws SQLException {
-    try {
-      return connection.prepareStatement(s, i);
-    } catch (SQLException ex) {
-      markWithError(ex);
-      throw ex;
-    }
-  }
-
-  @Override
-  public PreparedStatement prepareStatement(String s, String[] s2) throws SQLException {
-    try {
-      return connection.prepareStatement(s, s2);
-    } catch (SQLException ex) {
-      markWithError(ex);
-      throw ex;
-    }
-  }
-
-  @Override
-  public CallableStatement prepareCall(String s, int i, int x, int y) throws SQLException {
-    try {
-      return connection.prepareCall(s, i, x, y);
-    } catch (SQLException ex) {
-      markWithError(ex);
-      throw ex;
-    }
-  }
-
   /**
    * Returns the method that created the connection.
    * <p>
@@ -969,6 +1117,55 @@ final class PooledConnection extends ConnectionDelegator {
     return !methodLine.startsWith("io.ebean");
   }
 
+  /**
+   * Set the call site that obtained this connection.
+   */
+  void setCallSite(CallSite callSite) {
+    callSite.borrowed();
+    this.callSite = callSite;
+  }
+
+  /**
+   * Return the call site that obtained this connection (null when not tracking call sites).
+   */
+  CallSite callSite() {
+    return callSite;
+  }
+
+  /**
+   * Mark the connection as reported as a suspected leak returning false if it was already reported.
+   */
+  boolean markLeakReported() {
+    if (leakReported) {
+      return false;
+    }
+    leakReported = true;
+    return true;
+  }
+
+  /**
+   * Set the thread that obtained the connection when its stack trace was not sampled.
+   */
+  void setHolder(Thread holder) {
+    this.holder = new WeakReference<>(holder);
+  }
+
+  /**
+   * Capture the stack trace of the thread that obtained the connection as the hold has
+   * crossed longHoldMillis. The thread is not referenced after this.
+   */
+  void captureHolderStackTrace() {
+    final WeakReference<Thread> ref = holder;
+    if (ref != null) {
+      holder = null;
+      final Thread thread = ref.get();
+      if (thread != null && stackTrace == null) {
+        holderStackTrace = true;
+        stackTrace = thread.getStackTrace();
+      }
+    }
+  }
+
   /**
    * Set the stack trace to help find connection pool leaks.
    */
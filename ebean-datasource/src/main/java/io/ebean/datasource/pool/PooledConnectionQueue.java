@@ -2,11 +2,25 @@ package io.ebean.datasource.pool;
 
 import io.ebean.datasource.ConnectionPoolExhaustedException;
 import io.ebean.datasource.PoolStatus;
+import io.ebean.datasource.Priority;
 import io.ebean.datasource.pool.ConnectionPool.Status;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.System.Logger.Level.DEBUG;
@@ -14,6 +28,7 @@ import static java.lang.System.Logger.Level.DEBUG;
 final class PooledConnectionQueue {
 
   private static final TimeUnit MILLIS_TIME_UNIT = TimeUnit.MILLISECONDS;
+  private static final Priority[] PRIORITIES = Priority.values();
 
   private final String name;
   private final ConnectionPool pool;
@@ -26,92 +41,248 @@ final class PooledConnectionQueue {
    * Fast add remove based on slot id.
    */
   private final BusyConnectionBuffer busyList;
+  /**
+   * Optional lock free fast path for obtaining and returning connections.
+   */
+  private final ConnectionBag bag;
+  /**
+   * Number of times a connection was got via the lock free fast path.
+   */
+  private final LongAdder bagHitCount = new LongAdder();
   /**
    * Main lock guarding all access
    */
   private final ReentrantLock lock;
   /**
-   * Condition for threads waiting to take a connection
+   * FIFO queues (one per priority) of threads and async requests waiting to be handed a connection.
    */
-  private final Condition notEmpty;
-  private int connectionId;
+  private final ArrayDeque<ConnectionWaiter>[] waiters = newLanes();
+  /**
+   * Async waiters signalled under the lock, submitted to their executor once the lock is released.
+   */
+  private final List<AsyncConnectionWaiter> signalled = new ArrayList<>();
+  private final AtomicInteger connectionId = new AtomicInteger();
   private final long waitTimeoutMillis;
   private final long maxAgeMillis;
   private final int minSize;
-  private int maxSize;
+  /**
+   * The effective max size.
+   * <p>
+   * Updated under the lock and volatile such that it can be read without the lock.
+   */
+  private volatile int maxSize;
+  /**
+   * Set when the max size was reduced below the number of connections such that
+   * connections are closed rather than returned to the pool until back under the max size.
+   * <p>
+   * Volatile as this is read by the lock free fast path when returning connections.
+   */
+  private volatile boolean overMaxSize;
+  /**
+   * Number of connections only used by high priority borrowers.
+   */
+  private final int reservedHigh;
+  /**
+   * Number of connections reserved and being created outside the lock.
+   */
+  private int pendingConnections;
   /**
    * Number of threads in the wait queue.
+   * <p>
+   * Volatile as this is read by the lock free fast path when returning connections.
+   */
+  private volatile int waitingThreads;
+  /**
+   * Number of times a connection was got from this queue (per priority).
+   * <p>
+   * The statistics are updated using atomics such that the status can be read
+   * without taking the lock.
    */
-  private int waitingThreads;
+  private final AtomicIntegerArray laneHitCount = new AtomicIntegerArray(Priority.values().length);
   /**
-   * Number of times a thread had to wait.
+   * Number of times a thread had to wait (per priority).
    */
-  private int waitCount;
+  private final AtomicIntegerArray laneWaitCount = new AtomicIntegerArray(Priority.values().length);
+  private final LongAdder totalAcquireNanos = new LongAdder();
+  private final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+  private final LongAdder totalWaitNanos = new LongAdder();
   /**
-   * Number of times a connection was got from this queue.
+   * Acquire times recorded outside the lock.
    */
-  private int hitCount;
-  private long totalAcquireNanos;
-  private long maxAcquireNanos;
-  private long totalWaitNanos;
+  private final LatencyHistogram acquireHistogram = new LatencyHistogram();
+  /**
+   * Hold times recorded (without a lock) when connections are closed by the application.
+   */
+  private final LatencyHistogram holdHistogram = new LatencyHistogram();
+  private final LongAccumulator maxHoldNanos = new LongAccumulator(Math::max, 0);
+  private final LongAdder longHoldCount = new LongAdder();
+  private final long longHoldNanos;
 
   /**
    * The high water mark for the queue size.
+   * <p>
+   * Updated under the lock and volatile such that it can be read without the lock.
    */
-  private int highWaterMark;
+  private volatile int highWaterMark;
+  /**
+   * The peak busy connections since the last autoscale sample.
+   */
+  private int intervalPeak;
   /**
    * Last time the pool was reset. Used to close busy connections as they are
    * returned to the pool that where created prior to the lastResetTime.
+   * <p>
+   * This is the system time (not the pool clock) as it is compared with the system
+   * time the connections were created.
    */
-  private long lastResetTime;
-  private boolean doingShutdown;
+  private volatile long lastResetTime;
+  private final PoolClock clock;
+  /**
+   * Volatile as this is read by the lock free fast path.
+   */
+  private volatile boolean doingShutdown;
   private final long validateStaleMillis;
+  private final int initialConnectionParallelism;
 
   PooledConnectionQueue(ConnectionPool pool) {
     this.pool = pool;
+    this.clock = pool.clock();
     this.name = pool.name();
     this.minSize = pool.minSize();
     this.maxSize = pool.maxSize();
     this.waitTimeoutMillis = pool.waitTimeoutMillis();
     this.maxAgeMillis = pool.maxAgeMillis();
     this.validateStaleMillis = pool.validateStaleMillis();
+    this.initialConnectionParallelism = pool.initialConnectionParallelism();
+    this.longHoldNanos = MILLIS_TIME_UNIT.toNanos(pool.longHoldMillis());
+    this.reservedHigh = pool.reservedHighPriority();
+    if (reservedHigh < 0 || (reservedHigh > 0 && reservedHigh >= maxSize)) {
+      throw new IllegalArgumentException("reservedHighPriority " + reservedHigh + " must be less than maxSize " + maxSize);
+    }
     this.busyList = new BusyConnectionBuffer(maxSize, 20);
-    this.freeList = new FreeConnectionBuffer();
+    this.freeList = new FreeConnectionBuffer(maxSize);
+    this.bag = pool.threadAffinity() ? new ConnectionBag() : null;
     this.lock = new ReentrantLock(false);
-    this.notEmpty = lock.newCondition();
   }
 
-  private PoolStatus createStatus() {
-    return new Status(minSize, maxSize, freeList.size(), busyList.size(), waitingThreads, highWaterMark,
-      waitCount, hitCount, totalAcquireNanos, maxAcquireNanos, totalWaitNanos);
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static ArrayDeque<ConnectionWaiter>[] newLanes() {
+    final ArrayDeque<ConnectionWaiter>[] lanes = new ArrayDeque[Priority.values().length];
+    for (int i = 0; i < lanes.length; i++) {
+      lanes[i] = new ArrayDeque<>();
+    }
+    return lanes;
+  }
+
+  /**
+   * Create the status without taking the lock, optionally resetting the statistics.
+   * <p>
+   * Each statistic is read (and reset) atomically but not as one consistent snapshot
+   * across all the statistics. The sizes are read without synchronisation. This is
+   * consistent enough for monitoring and means reading the status never blocks (or
+   * is blocked by) threads obtaining and returning connections.
+   */
+  private PoolStatus createStatus(boolean reset) {
+    // connections parked in the bag are registered as busy but are actually free
+    final int parked = parkedCount();
+    final int busy = busyList.size() - parked;
+    final int[] laneHits = read(laneHitCount, reset);
+    laneHits[Priority.NORMAL.ordinal()] += (int) (reset ? bagHitCount.sumThenReset() : bagHitCount.sum());
+    final int[] laneWaits = read(laneWaitCount, reset);
+    final int highWater = highWaterMark;
+    if (reset) {
+      highWaterMark = busy;
+    }
+    return new Status(minSize, maxSize, freeList.size() + parked, busy, waitingThreads, highWater,
+      sum(laneWaits), sum(laneHits), read(totalAcquireNanos, reset), reset ? maxAcquireNanos.getThenReset() : maxAcquireNanos.get(),
+      read(totalWaitNanos, reset), laneHits, laneWaits,
+      acquireHistogram.snapshot(reset), holdHistogram.snapshot(reset),
+      reset ? maxHoldNanos.getThenReset() : maxHoldNanos.get(), read(longHoldCount, reset));
+  }
+
+  private static long read(LongAdder adder, boolean reset) {
+    return reset ? adder.sumThenReset() : adder.sum();
+  }
+
+  private static int[] read(AtomicIntegerArray counts, boolean reset) {
+    final int[] values = new int[counts.length()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+    }
+    return values;
+  }
+
+  private static int sum(int[] values) {
+    int sum = 0;
+    for (int value : values) {
+      sum += value;
+    }
+    return sum;
   }
 
   @Override
   public String toString() {
-    lock.lock();
-    try {
-      return createStatus().toString();
-    } finally {
-      lock.unlock();
-    }
+    return createStatus(false).toString();
   }
 
+  /**
+   * Return the status (without taking the lock).
+   */
   PoolStatus status(boolean reset) {
-    lock.lock();
-    try {
-      PoolStatus s = createStatus();
-      if (reset) {
-        highWaterMark = busyList.size();
-        hitCount = 0;
-        waitCount = 0;
-        maxAcquireNanos = 0;
-        totalAcquireNanos = 0;
-        totalWaitNanos = 0;
-      }
-      return s;
-    } finally {
-      lock.unlock();
-    }
+    return createStatus(reset);
+  }
+
+  /*
+   * The following read individual statistics without the lock and without
+   * creating the status (with its histogram snapshots) for the MBean attributes.
+   */
+
+  int maxSize() {
+    return maxSize;
+  }
+
+  int free() {
+    return freeList.size() + parkedCount();
+  }
+
+  int busy() {
+    return busyList.size() - parkedCount();
+  }
+
+  int waiting() {
+    return waitingThreads;
+  }
+
+  int highWaterMark() {
+    return highWaterMark;
+  }
+
+  int waitCount() {
+    return sum(read(laneWaitCount, false));
+  }
+
+  int hitCount() {
+    return sum(read(laneHitCount, false)) + (int) bagHitCount.sum();
+  }
+
+  long totalAcquireNanos() {
+    return totalAcquireNanos.sum();
+  }
+
+  long maxAcquireNanos() {
+    return maxAcquireNanos.get();
+  }
+
+  long totalWaitNanos() {
+    return totalWaitNanos.sum();
+  }
+
+  long maxHoldNanos() {
+    return maxHoldNanos.get();
+  }
+
+  long longHoldCount() {
+    return longHoldCount.sum();
   }
 
   void setMaxSize(int maxSize) {
@@ -120,26 +291,199 @@ final class PooledConnectionQueue {
       if (maxSize < this.minSize) {
         throw new IllegalArgumentException("maxSize " + maxSize + " < minSize " + this.minSize);
       }
+      if (reservedHigh > 0 && maxSize <= reservedHigh) {
+        throw new IllegalArgumentException("maxSize " + maxSize + " <= reservedHighPriority " + reservedHigh);
+      }
       this.busyList.setCapacity(maxSize);
       this.maxSize = maxSize;
+      closeExcessFree();
+      // waiting threads can grow into the increased capacity
+      dispatch();
     } finally {
-      lock.unlock();
+      unlock();
+    }
+  }
+
+  /**
+   * When the max size was reduced close the least recently used free connections
+   * such that the pool does not hold more connections than the new max size.
+   * <p>
+   * Busy connections above the new max size are closed as they are returned.
+   */
+  private void closeExcessFree() {
+    // stop connections being parked in the bag before draining it
+    overMaxSize = totalConnections() > maxSize;
+    drainBag();
+    final int excess = Math.min(totalConnections() - maxSize, freeList.size());
+    if (excess > 0) {
+      final int trimmedCount = freeList.trimTo(freeList.size() - excess);
+      if (Log.isLoggable(DEBUG)) {
+        Log.debug("DataSource [{0}] closed [{1}] excess free connections. New size[{2}]", name, trimmedCount, totalConnections());
+      }
+    }
+    overMaxSize = totalConnections() > maxSize;
+  }
+
+  /**
+   * Record the time a connection was held by the application (without a lock).
+   */
+  void recordHold(long holdNanos) {
+    holdHistogram.record(holdNanos);
+    maxHoldNanos.accumulate(holdNanos);
+    if (longHoldNanos > 0 && holdNanos >= longHoldNanos) {
+      longHoldCount.increment();
+    }
+  }
+
+  /**
+   * Return the acquire histogram bucket counts (without a lock).
+   */
+  long[] acquireBuckets() {
+    return acquireHistogram.snapshot(false);
+  }
+
+  /**
+   * Copy the acquire histogram bucket counts into the given array (without a lock or allocating).
+   */
+  void acquireBuckets(long[] buckets) {
+    acquireHistogram.snapshotInto(buckets);
+  }
+
+  /**
+   * Return the hold histogram bucket counts (without a lock).
+   */
+  long[] holdBuckets() {
+    return holdHistogram.snapshot(false);
+  }
+
+  /**
+   * Return the peak busy connections since the last sample and start a new sample interval.
+   */
+  int sampleBusyPeak() {
+    lock.lock();
+    try {
+      final int busy = busyList.size() - parkedCount();
+      final int peak = Math.max(intervalPeak, busy);
+      intervalPeak = busy;
+      return peak;
+    } finally {
+      unlock();
     }
   }
 
   private int totalConnections() {
-    return freeList.size() + busyList.size();
+    return freeList.size() + busyList.size() + pendingConnections;
   }
 
+  /**
+   * Create connections adding them to the free list.
+   * <p>
+   * Slots are reserved up front and the connections are created outside the lock
+   * using up to initialConnectionParallelism concurrent connects. If creating a
+   * connection fails the remaining connections are not created and the first
+   * exception is thrown once all the in progress connects have completed.
+   */
   void createConnections(int numberToAdd) throws SQLException {
+    final int count = reserveConnections(numberToAdd);
+    if (count == 0) {
+      return;
+    }
+    final AtomicInteger remaining = new AtomicInteger(count);
+    final int workers = Math.min(initialConnectionParallelism, count);
+    if (workers <= 1) {
+      createFreeConnections(remaining);
+      return;
+    }
+    final ExecutorService executor = ExecutorFactory.newConnectExecutor(name);
+    try {
+      final List<Future<Void>> futures = new ArrayList<>(workers);
+      for (int i = 0; i < workers; i++) {
+        futures.add(executor.submit(() -> {
+          createFreeConnections(remaining);
+          return null;
+        }));
+      }
+      SQLException error = null;
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          final SQLException cause = e.getCause() instanceof SQLException
+            ? (SQLException) e.getCause() : new SQLException("Error creating connection", e.getCause());
+          if (error == null) {
+            error = cause;
+          } else {
+            error.addSuppressed(cause);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SQLException("Interrupted creating connections", e);
+        }
+      }
+      if (error != null) {
+        throw error;
+      }
+    } finally {
+      executor.shutdown();
+      releaseReservations(remaining);
+    }
+  }
+
+  /**
+   * Reserve slots for the connections to add (without exceeding the maximum pool size).
+   */
+  private int reserveConnections(int numberToAdd) {
     lock.lock();
     try {
-      for (int i = 0; i < numberToAdd; i++) {
-        freeList.add(pool.createConnectionForQueue(connectionId++));
+      final int count = Math.min(numberToAdd, maxSize - totalConnections());
+      if (count <= 0) {
+        return 0;
       }
-      notEmpty.signal();
+      pendingConnections += count;
+      return count;
     } finally {
-      lock.unlock();
+      unlock();
+    }
+  }
+
+  /**
+   * Create connections (using the reserved slots) until there are none remaining.
+   */
+  private void createFreeConnections(AtomicInteger remaining) throws SQLException {
+    while (remaining.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+      final PooledConnection c;
+      try {
+        c = pool.createConnectionForQueue(connectionId.getAndIncrement());
+      } catch (SQLException | RuntimeException e) {
+        releaseReservation();
+        // stop creating further connections
+        releaseReservations(remaining);
+        throw e;
+      }
+      lock.lock();
+      try {
+        pendingConnections--;
+        freeList.add(c);
+        dispatch();
+      } finally {
+        unlock();
+      }
+    }
+  }
+
+  /**
+   * Release the reserved slots of connections that will not be created.
+   */
+  private void releaseReservations(AtomicInteger remaining) {
+    final int count = remaining.getAndSet(0);
+    if (count > 0) {
+      lock.lock();
+      try {
+        pendingConnections -= count;
+        dispatch();
+      } finally {
+        unlock();
+      }
     }
   }
 
@@ -147,6 +491,13 @@ final class PooledConnectionQueue {
    * Return a PooledConnection.
    */
   void returnPooledConnection(PooledConnection c, boolean forceClose) {
+    if (bag != null && !forceClose && waitingThreads == 0 && !overMaxSize && !doingShutdown && !c.shouldTrimOnReturn(lastResetTime, maxAgeMillis)) {
+      bag.offer(c);
+      // re-check such that a thread that just started waiting is not missed
+      if (waitingThreads == 0 || !bag.claim(c)) {
+        return;
+      }
+    }
     lock.lock();
     try {
       if (!busyList.remove(c)) {
@@ -154,13 +505,136 @@ final class PooledConnectionQueue {
       }
       if (forceClose || c.shouldTrimOnReturn(lastResetTime, maxAgeMillis)) {
         c.closeConnectionFully(false);
+      } else if (overMaxSize && totalConnections() >= maxSize) {
+        // the max size was reduced, close rather than return the connection
+        c.closeConnectionFully(false);
       } else {
         freeList.add(c);
-        notEmpty.signal();
       }
+      if (overMaxSize) {
+        overMaxSize = totalConnections() > maxSize;
+      }
+      // a waiting thread can take this connection or grow the pool
+      dispatch();
     } finally {
-      lock.unlock();
+      unlock();
+    }
+  }
+
+  /**
+   * Hand free connections (or capacity to grow the pool) to the waiters in priority order.
+   * <p>
+   * A free connection is handed directly to the waiter and remains registered as busy,
+   * such that the waiter does not take the lock. When there are no free connections
+   * the waiter is given a reserved slot to grow the pool.
+   */
+  private void dispatch() {
+    while (waitingThreads > 0) {
+      final boolean free = !freeList.isEmpty();
+      if (!free && busyList.size() + pendingConnections >= maxSize) {
+        return;
+      }
+      final ConnectionWaiter waiter = nextWaiter();
+      if (waiter == null) {
+        return;
+      }
+      totalWaitNanos.add(System.nanoTime() - waiter.start());
+      if (free) {
+        final PooledConnection c = freeList.remove();
+        registerBusyConnection(c);
+        recordAcquire(waiter.start());
+        waiter.handoff(c);
+      } else {
+        pendingConnections++;
+        waiter.grow();
+      }
+    }
+  }
+
+  /**
+   * Remove and return the oldest waiter of the highest priority that is permitted
+   * to take a connection, or null if there is no such waiter.
+   * <p>
+   * Cancelled async requests are discarded.
+   */
+  private ConnectionWaiter nextWaiter() {
+    for (Priority priority : PRIORITIES) {
+      final ArrayDeque<ConnectionWaiter> lane = waiters[priority.ordinal()];
+      if (!lane.isEmpty()) {
+        if (!permitted(priority)) {
+          // lower priorities are restricted in the same way
+          return null;
+        }
+        ConnectionWaiter waiter;
+        while ((waiter = lane.poll()) != null) {
+          waitingThreads--;
+          if (!waiter.isCancelled()) {
+            return waiter;
+          }
+        }
+      }
     }
+    return null;
+  }
+
+  /**
+   * Return true if a borrower of the given priority can take another connection.
+   * <p>
+   * NORMAL and LOW priority borrowers can not use the connections reserved for HIGH priority.
+   */
+  private boolean permitted(Priority priority) {
+    return reservedHigh == 0 || priority == Priority.HIGH
+      || busyList.size() + pendingConnections - parkedCount() < maxSize - reservedHigh;
+  }
+
+  /**
+   * Return true if there are no waiters of the same or higher priority.
+   */
+  private boolean noWaitersAhead(Priority priority) {
+    for (int i = 0; i <= priority.ordinal(); i++) {
+      if (!waiters[i].isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Add the waiter to the queue returning a connection parked in the bag before
+   * the waiter was registered (in which case the waiter is not queued).
+   */
+  private PooledConnection enqueue(ConnectionWaiter waiter) {
+    final ArrayDeque<ConnectionWaiter> lane = waiters[waiter.priority().ordinal()];
+    lane.add(waiter);
+    waitingThreads++;
+    final PooledConnection parked = permitted(waiter.priority()) ? pollBag() : null;
+    if (parked != null) {
+      lane.removeLast();
+      waitingThreads--;
+      totalWaitNanos.add(System.nanoTime() - waiter.start());
+      recordAcquire(waiter.start());
+    } else {
+      // only counted as a wait when the waiter is left in the queue
+      laneWaitCount.incrementAndGet(waiter.priority().ordinal());
+    }
+    return parked;
+  }
+
+  /**
+   * Create the exception thrown when a waiter times out.
+   */
+  private ConnectionPoolExhaustedException exhausted(ConnectionWaiter waiter) {
+    final long waitNanos = System.nanoTime() - waiter.start();
+    PoolEvents.exhausted(pool, waitNanos, waitingThreads, maxSize);
+    final long waitMillis = MILLIS_TIME_UNIT.convert(waitNanos, TimeUnit.NANOSECONDS);
+    final long maxWaitMillis = MILLIS_TIME_UNIT.convert(waiter.deadline() - waiter.start(), TimeUnit.NANOSECONDS);
+    String msg = "Unsuccessfully waited [" + maxWaitMillis + "] millis for a connection to be returned."
+      + " No connections are free. You need to Increase the max connections of [" + maxSize + "]"
+      + " or look for a connection pool leak using datasource.xxx.capturestacktrace=true";
+    if (pool.captureStackTrace()) {
+      dumpBusyConnectionInformation();
+    }
+    return new ConnectionPoolExhaustedException(msg, waitMillis);
   }
 
   private PooledConnection extractFromFreeList() {
@@ -168,33 +642,90 @@ final class PooledConnectionQueue {
       return null;
     }
     final PooledConnection c = freeList.remove();
-    if (validateStaleMillis > 0 && staleEviction(c)) {
-      c.closeConnectionFully(false);
-      return null;
-    }
     registerBusyConnection(c);
     return c;
   }
 
+  /**
+   * Return true if the connection has been idle long enough to require validation and fails it.
+   * <p>
+   * This is performed outside the lock as validation involves a round trip to the database.
+   */
   private boolean staleEviction(PooledConnection c) {
-    if (!stale(c)) {
+    if (validateStaleMillis == 0 || !stale(c)) {
       return false;
     }
+    final long idleMillis = clock.millis() - c.lastUsedTime();
     if (Log.isLoggable(DEBUG)) {
-      Log.debug("stale connection validation millis:{0}", (System.currentTimeMillis() - c.lastUsedTime()));
+      Log.debug("stale connection validation millis:{0}", idleMillis);
+    }
+    if (pool.invalidConnection(c)) {
+      PoolEvents.staleEvicted(pool, c, idleMillis);
+      return true;
     }
-    return pool.invalidConnection(c);
+    return false;
   }
 
   private boolean stale(PooledConnection c) {
-    return c.lastUsedTime() < System.currentTimeMillis() - validateStaleMillis;
+    return c.lastUsedTime() < clock.millis() - validateStaleMillis;
   }
 
   PooledConnection obtainConnection() throws SQLException {
+    return obtainConnection(MILLIS_TIME_UNIT.toNanos(waitTimeoutMillis), Priority.NORMAL);
+  }
+
+  /**
+   * Obtain a connection waiting at most the given nanos when the pool is at maximum size.
+   */
+  PooledConnection obtainConnection(long waitNanos) throws SQLException {
+    return obtainConnection(waitNanos, Priority.NORMAL);
+  }
+
+  /**
+   * Obtain a connection for a borrower of the given priority.
+   */
+  PooledConnection obtainConnection(Priority priority) throws SQLException {
+    return obtainConnection(MILLIS_TIME_UNIT.toNanos(waitTimeoutMillis), priority);
+  }
+
+  private PooledConnection obtainConnection(long waitNanos, Priority priority) throws SQLException {
     try {
-      PooledConnection pc = _obtainConnection();
-      pc.resetForUse();
-      return pc;
+      final long start = System.nanoTime();
+      // the lock free fast path is not used when connections are reserved for high priority
+      if (bag != null && !doingShutdown && reservedHigh == 0 && priority == Priority.NORMAL) {
+        PooledConnection pc = bag.poll();
+        if (pc != null) {
+          if (!staleEviction(pc)) {
+            bagHitCount.increment();
+            pc.resetForUse();
+            // recorded with the other acquire times as bag hits are included in the hit count
+            final long elapsed = recordAcquire(start);
+            acquireHistogram.record(elapsed);
+            PoolEvents.borrowed(pool, pc, elapsed);
+            return pc;
+          }
+          returnPooledConnection(pc, true);
+        }
+      }
+      final long deadline = start + waitNanos;
+      try {
+        for (; ; ) {
+          PooledConnection pc = _obtainConnection(start, deadline, priority);
+          if (pc == null) {
+            // a slot was reserved, create the new connection outside the lock
+            pc = createConnection(start);
+          } else if (staleEviction(pc)) {
+            // remove the invalid connection and try again
+            returnPooledConnection(pc, true);
+            continue;
+          }
+          pc.resetForUse();
+          PoolEvents.borrowed(pool, pc, System.nanoTime() - start);
+          return pc;
+        }
+      } finally {
+        acquireHistogram.record(System.nanoTime() - start);
+      }
 
     } catch (InterruptedException e) {
       // restore the interrupted status as we throw SQLException
@@ -207,15 +738,25 @@ final class PooledConnectionQueue {
    * Register the PooledConnection with the busyList.
    */
   private int registerBusyConnection(PooledConnection connection) {
-    int busySize = busyList.add(connection);
+    connection.markBusy(clock.millis());
+    int busySize = busyList.add(connection) - parkedCount();
     if (busySize > highWaterMark) {
       highWaterMark = busySize;
     }
+    if (busySize > intervalPeak) {
+      intervalPeak = busySize;
+    }
     return busySize;
   }
 
-  private PooledConnection _obtainConnection() throws InterruptedException, SQLException {
-    var start = System.nanoTime();
+  /**
+   * Obtain a connection from the free list or wait for one to be handed over.
+   * <p>
+   * Returns null when a slot has been reserved to grow the pool, in which case
+   * the caller creates the connection outside the lock.
+   */
+  private PooledConnection _obtainConnection(long start, long deadline, Priority priority) throws InterruptedException, SQLException {
+    final BlockingConnectionWaiter waiter;
     lock.lockInterruptibly();
     try {
       if (doingShutdown) {
@@ -223,82 +764,347 @@ final class PooledConnectionQueue {
       }
       // this includes attempts that fail with InterruptedException
       // or SQLException but that is ok as its only an indicator
-      hitCount++;
-      // are other threads already waiting? (they get priority)
-      if (waitingThreads == 0) {
+      laneHitCount.incrementAndGet(priority.ordinal());
+      // are other threads of the same or higher priority already waiting? (they go first)
+      if (noWaitersAhead(priority) && permitted(priority)) {
         PooledConnection connection = extractFromFreeList();
-        if (connection != null) {
-          return connection;
+        if (connection == null) {
+          connection = pollBag();
         }
-        connection = createConnection();
         if (connection != null) {
+          recordAcquire(start);
           return connection;
         }
+        if (reserveConnection()) {
+          return null;
+        }
       }
+      // The pool is at maximum size. We are going to join the
+      // queue and wait for a connection to be handed to us.
+      waiter = new BlockingConnectionWaiter(start, deadline, priority);
+      PooledConnection parked = enqueue(waiter);
+      if (parked != null) {
+        return parked;
+      }
+    } finally {
+      unlock();
+    }
+    return awaitConnection(waiter);
+  }
+
+  /**
+   * Park (outside the lock) until a connection is handed to the waiter.
+   * <p>
+   * Returns null when a slot has been reserved to grow the pool.
+   */
+  private PooledConnection awaitConnection(BlockingConnectionWaiter waiter) throws SQLException, InterruptedException {
+    final boolean interrupted = waiter.await();
+    if (waiter.isWaiting()) {
+      lock.lock();
       try {
-        // The pool is at maximum size. We are going to go into
-        // a wait loop until connections are returned into the pool.
-        waitCount++;
-        waitingThreads++;
-        return _obtainConnectionWaitLoop();
+        if (waiter.isWaiting()) {
+          waiters[waiter.priority().ordinal()].remove(waiter);
+          waitingThreads--;
+          totalWaitNanos.add(System.nanoTime() - waiter.start());
+          if (interrupted) {
+            recordAcquire(waiter.start());
+            throw new InterruptedException();
+          }
+          // We waited long enough, that a connection was returned, so we try to create a new connection.
+          if (permitted(waiter.priority()) && reserveConnection()) {
+            return null;
+          }
+          recordAcquire(waiter.start());
+          throw exhausted(waiter);
+        }
       } finally {
-        waitingThreads--;
-        totalWaitNanos += (System.nanoTime() - start);
+        unlock();
+      }
+    }
+    final PooledConnection connection = waiter.connection();
+    if (interrupted) {
+      // interrupted as the connection or slot was handed over, pass it on
+      if (connection != null) {
+        returnPooledConnection(connection, false);
+      } else {
+        releaseReservation();
+      }
+      throw new InterruptedException();
+    }
+    return connection;
+  }
+
+  /**
+   * Obtain a connection asynchronously.
+   * <p>
+   * When the pool is at maximum size the request is queued with the waiting
+   * threads and the future is completed (using the executor) when a connection
+   * is handed to it. No thread is blocked while waiting.
+   */
+  CompletableFuture<Connection> obtainConnectionAsync(long timeoutNanos, Executor executor, Thread holder, StackTraceElement[] stackTrace, CallSite callSite) {
+    final var waiter = new AsyncConnectionWaiter(this, System.nanoTime(), timeoutNanos, executor, holder, stackTrace, callSite);
+    acquireAsync(waiter);
+    return waiter.future();
+  }
+
+  private void acquireAsync(AsyncConnectionWaiter waiter) {
+    final boolean shuttingDown;
+    lock.lock();
+    try {
+      shuttingDown = doingShutdown;
+      if (shuttingDown) {
+        return;
+      }
+      laneHitCount.incrementAndGet(waiter.priority().ordinal());
+      if (noWaitersAhead(waiter.priority()) && permitted(waiter.priority())) {
+        PooledConnection connection = extractFromFreeList();
+        if (connection == null) {
+          connection = pollBag();
+        }
+        if (connection != null) {
+          recordAcquire(waiter.start());
+          waiter.handoff(connection);
+          return;
+        }
+        if (reserveConnection()) {
+          waiter.grow();
+          return;
+        }
+      }
+      PooledConnection parked = enqueue(waiter);
+      if (parked != null) {
+        waiter.handoff(parked);
+      } else {
+        waiter.scheduleTimeout(() -> timeoutAsync(waiter));
       }
     } finally {
-      final var elapsed = System.nanoTime() - start;
-      totalAcquireNanos += elapsed;
-      maxAcquireNanos = Math.max(maxAcquireNanos, elapsed);
+      unlock();
+    }
+    if (shuttingDown) {
+      waiter.future().completeExceptionally(new SQLException("Trying to access the Connection Pool when it is shutting down"));
+    }
+  }
+
+  /**
+   * Record the async waiter signalled under the lock such that it is submitted when the lock is released.
+   */
+  void signalled(AsyncConnectionWaiter waiter) {
+    signalled.add(waiter);
+  }
+
+  /**
+   * Release the lock and then submit the async waiters that were signalled while holding it.
+   * <p>
+   * This means completing async requests (including user dependent stages) never runs
+   * under the lock and a rejecting executor does not re-enter dispatch().
+   */
+  private void unlock() {
+    if (signalled.isEmpty() || lock.getHoldCount() > 1) {
       lock.unlock();
+      return;
+    }
+    final AsyncConnectionWaiter[] submit = signalled.toArray(new AsyncConnectionWaiter[0]);
+    signalled.clear();
+    lock.unlock();
+    for (AsyncConnectionWaiter waiter : submit) {
+      waiter.submit();
     }
   }
 
-  private PooledConnection createConnection() throws SQLException {
-    if (busyList.size() < maxSize) {
-      // grow the connection pool
-      PooledConnection c = pool.createConnectionForQueue(connectionId++);
-      int busySize = registerBusyConnection(c);
-      if (Log.isLoggable(DEBUG)) {
-        Log.debug("DataSource [{0}] grow; id[{1}] busy[{2}] max[{3}]", name, c.name(), busySize, maxSize);
+  /**
+   * Complete the async request using the connection or slot it was given.
+   * <p>
+   * This runs on the executor, outside the lock.
+   */
+  void completeAsync(AsyncConnectionWaiter waiter) {
+    final CompletableFuture<Connection> future = waiter.future();
+    PooledConnection c = waiter.connection();
+    try {
+      if (c == null) {
+        c = createConnection(waiter.start());
+      } else if (staleEviction(c)) {
+        // remove the invalid connection and try again
+        returnPooledConnection(c, true);
+        waiter.reset();
+        acquireAsync(waiter);
+        return;
       }
-      return c;
+    } catch (SQLException | RuntimeException e) {
+      recordAcquired(waiter);
+      future.completeExceptionally(e);
+      return;
+    }
+    recordAcquired(waiter);
+    if (future.isDone()) {
+      // cancelled while connecting
+      returnPooledConnection(c, false);
+      return;
+    }
+    c.resetForUse();
+    PoolEvents.borrowed(pool, c, System.nanoTime() - waiter.start());
+    final Connection connection = pool.borrowedAsync(c, waiter.holder(), waiter.stackTrace(), waiter.callSite());
+    if (!future.complete(connection)) {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        Log.warn("Error returning connection for cancelled request", e);
+      }
+    }
+  }
+
+  /**
+   * The executor rejected completing the request, pass on the connection or slot it was given.
+   */
+  void rejectAsync(AsyncConnectionWaiter waiter, RejectedExecutionException e) {
+    final PooledConnection c = waiter.connection();
+    if (c != null) {
+      returnPooledConnection(c, false);
     } else {
-      return null;
+      releaseReservation();
+    }
+    recordAcquired(waiter);
+    waiter.future().completeExceptionally(e);
+  }
+
+  private void timeoutAsync(AsyncConnectionWaiter waiter) {
+    final ConnectionPoolExhaustedException exhausted;
+    lock.lock();
+    try {
+      if (!waiters[waiter.priority().ordinal()].remove(waiter)) {
+        // already handed a connection or slot
+        return;
+      }
+      waitingThreads--;
+      totalWaitNanos.add(System.nanoTime() - waiter.start());
+      recordAcquire(waiter.start());
+      exhausted = exhausted(waiter);
+    } finally {
+      unlock();
     }
+    recordAcquired(waiter);
+    waiter.future().completeExceptionally(exhausted);
   }
 
   /**
-   * Got into a loop waiting for connections to be returned to the pool.
+   * Remove the async waiter cancelled by the caller from its lane (if still queued).
    */
-  private PooledConnection _obtainConnectionWaitLoop() throws SQLException, InterruptedException {
-    long nanos = MILLIS_TIME_UNIT.toNanos(waitTimeoutMillis);
-    for (; ; ) {
-      if (nanos <= 0) {
-        // We waited long enough, that a connection was returned, so we try to create a new connection.
-        PooledConnection conn = createConnection();
-        if (conn != null) {
-          return conn;
-        }
-        String msg = "Unsuccessfully waited [" + waitTimeoutMillis + "] millis for a connection to be returned."
-          + " No connections are free. You need to Increase the max connections of [" + maxSize + "]"
-          + " or look for a connection pool leak using datasource.xxx.capturestacktrace=true";
-        if (pool.captureStackTrace()) {
-          dumpBusyConnectionInformation();
-        }
+  void cancelAsync(AsyncConnectionWaiter waiter) {
+    lock.lock();
+    try {
+      if (waiters[waiter.priority().ordinal()].remove(waiter)) {
+        waitingThreads--;
+        totalWaitNanos.add(System.nanoTime() - waiter.start());
+      }
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Record the acquire time of the async request (outside the lock).
+   */
+  private void recordAcquired(AsyncConnectionWaiter waiter) {
+    acquireHistogram.record(System.nanoTime() - waiter.start());
+  }
+
+  /**
+   * Return the number of busy connections read without the lock (approximate).
+   */
+  int approxBusy() {
+    return busyList.size() - parkedCount();
+  }
+
+  /**
+   * Return the number of free connections read without the lock (approximate).
+   */
+  int approxFree() {
+    return freeList.size() + parkedCount();
+  }
 
-        throw new ConnectionPoolExhaustedException(msg);
+  /**
+   * Return the number of connections parked in the bag.
+   */
+  private int parkedCount() {
+    return bag == null ? 0 : bag.idleCount();
+  }
+
+  /**
+   * Claim a connection parked in the bag (that is already registered as busy).
+   */
+  private PooledConnection pollBag() {
+    return bag == null ? null : bag.poll();
+  }
+
+  /**
+   * Move the connections parked in the bag back into the free list.
+   */
+  private void drainBag() {
+    if (bag != null) {
+      for (PooledConnection c : bag.drain()) {
+        busyList.remove(c);
+        freeList.add(c);
       }
+      dispatch();
+    }
+  }
 
-      try {
-        nanos = notEmpty.awaitNanos(nanos);
-        if (!freeList.isEmpty()) {
-          // successfully waited
-          return extractFromFreeList();
-        }
-      } catch (InterruptedException ie) {
-        notEmpty.signal(); // propagate to non-interrupted thread
-        throw ie;
+  private long recordAcquire(long start) {
+    final var elapsed = System.nanoTime() - start;
+    totalAcquireNanos.add(elapsed);
+    maxAcquireNanos.accumulate(elapsed);
+    return elapsed;
+  }
+
+  /**
+   * Reserve a slot to grow the pool returning false if the pool is at maximum size.
+   */
+  private boolean reserveConnection() {
+    if (busyList.size() + pendingConnections < maxSize) {
+      pendingConnections++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Grow the pool using a previously reserved slot.
+   * <p>
+   * The connect and init sql is performed outside the lock such that a slow
+   * connect does not block other threads obtaining or returning connections.
+   */
+  private PooledConnection createConnection(long start) throws SQLException {
+    final PooledConnection c;
+    try {
+      c = pool.createConnectionForQueue(connectionId.getAndIncrement());
+    } catch (SQLException | RuntimeException e) {
+      releaseReservation();
+      throw e;
+    }
+    lock.lock();
+    try {
+      pendingConnections--;
+      int busySize = registerBusyConnection(c);
+      recordAcquire(start);
+      if (Log.isLoggable(DEBUG)) {
+        Log.debug("DataSource [{0}] grow; id[{1}] busy[{2}] max[{3}]", name, c.name(), busySize, maxSize);
       }
+      return c;
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Release a reserved slot when creating the connection failed.
+   */
+  private void releaseReservation() {
+    lock.lock();
+    try {
+      pendingConnections--;
+      // a waiting thread can now try to grow the pool
+      dispatch();
+    } finally {
+      unlock();
     }
   }
 
@@ -306,7 +1112,8 @@ final class PooledConnectionQueue {
     lock.lock();
     try {
       doingShutdown = true;
-      PoolStatus status = createStatus();
+      drainBag();
+      PoolStatus status = createStatus(false);
       closeFreeConnections(true);
 
       if (!closeBusyConnections) {
@@ -321,7 +1128,7 @@ final class PooledConnectionQueue {
       }
       return status;
     } finally {
-      lock.unlock();
+      unlock();
       doingShutdown = false;
     }
   }
@@ -335,12 +1142,16 @@ final class PooledConnectionQueue {
   void reset(long leakTimeMinutes) {
     lock.lock();
     try {
-      PoolStatus status = createStatus();
+      PoolStatus status = createStatus(false);
       Log.info("Resetting DataSource [{0}] {1}", name, status);
       lastResetTime = System.currentTimeMillis();
 
+      drainBag();
       closeFreeConnections(false);
       closeBusyConnections(leakTimeMinutes);
+      // closing busy connections frees capacity that waiting threads can grow into
+      dispatch();
+      PoolEvents.reset(pool);
 
       String busyInfo = getBusyConnectionInformation();
       if (!busyInfo.isEmpty()) {
@@ -348,26 +1159,28 @@ final class PooledConnectionQueue {
       }
 
     } finally {
-      lock.unlock();
+      unlock();
     }
   }
 
   void trim(long maxInactiveMillis, long maxAgeMillis) {
+    int add = 0;
     lock.lock();
     try {
+      drainBag();
       if (trimInactiveConnections(maxInactiveMillis, maxAgeMillis)) {
-        try {
-          // ensure there are the min connections
-          int add = minSize - totalConnections();
-          if (add > 0) {
-            createConnections(add);
-          }
-        } catch (SQLException e) {
-          Log.error("Error trying to ensure minimum connections", e);
-        }
+        add = minSize - totalConnections();
       }
     } finally {
-      lock.unlock();
+      unlock();
+    }
+    if (add > 0) {
+      try {
+        // ensure there are the min connections (created outside the lock)
+        createConnections(add);
+      } catch (SQLException e) {
+        Log.error("Error trying to ensure minimum connections", e);
+      }
     }
   }
 
@@ -375,11 +1188,12 @@ final class PooledConnectionQueue {
    * Trim connections that have been not used for some time.
    */
   private boolean trimInactiveConnections(long maxInactiveMillis, long maxAgeMillis) {
-    final long createdSince = (maxAgeMillis == 0) ? 0 : System.currentTimeMillis() - maxAgeMillis;
+    final long now = clock.millis();
+    final long createdSince = (maxAgeMillis == 0) ? 0 : now - maxAgeMillis;
     final int trimmedCount;
     if (freeList.size() > minSize) {
       // trim on maxInactive and maxAge
-      long usedSince = System.currentTimeMillis() - maxInactiveMillis;
+      long usedSince = now - maxInactiveMillis;
       trimmedCount = freeList.trim(minSize, usedSince, createdSince);
     } else if (createdSince > 0) {
       // trim only on maxAge
@@ -387,8 +1201,11 @@ final class PooledConnectionQueue {
     } else {
       trimmedCount = 0;
     }
-    if (trimmedCount > 0 && Log.isLoggable(DEBUG)) {
-      Log.debug("DataSource [{0}] trimmed [{1}] inactive connections. New size[{2}]", name, trimmedCount, totalConnections());
+    if (trimmedCount > 0) {
+      PoolEvents.trimmed(pool, trimmedCount);
+      if (Log.isLoggable(DEBUG)) {
+        Log.debug("DataSource [{0}] trimmed [{1}] inactive connections. New size[{2}]", name, trimmedCount, totalConnections());
+      }
     }
     return trimmedCount > 0 && freeList.size() < minSize;
   }
@@ -401,7 +1218,7 @@ final class PooledConnectionQueue {
     try {
       freeList.closeAll(logErrors);
     } finally {
-      lock.unlock();
+      unlock();
     }
   }
 
@@ -418,9 +1235,48 @@ final class PooledConnectionQueue {
   void closeBusyConnections(long leakTimeMinutes) {
     lock.lock();
     try {
-      busyList.closeBusyConnections(leakTimeMinutes);
+      drainBag();
+      busyList.closeBusyConnections(clock.millis(), leakTimeMinutes);
     } finally {
-      lock.unlock();
+      unlock();
+    }
+  }
+
+  /**
+   * Return the busy connections obtained before startedBefore that have not already
+   * been reported as suspected leaks.
+   * <p>
+   * When reclaim is true these connections are removed from the busy list and closed
+   * such that waiting threads can grow the pool.
+   */
+  List<PooledConnection> leakSuspects(long startedBefore, boolean reclaim) {
+    lock.lock();
+    try {
+      drainBag();
+      List<PooledConnection> suspects = busyList.leakSuspects(startedBefore, reclaim);
+      if (reclaim && !suspects.isEmpty()) {
+        for (PooledConnection pc : suspects) {
+          pc.closeConnectionFully(false);
+        }
+        dispatch();
+      }
+      return suspects;
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Capture the stack trace of the holder of busy connections obtained before startedBefore
+   * (that were not sampled when obtained).
+   */
+  void captureHolderStackTraces(long startedBefore) {
+    lock.lock();
+    try {
+      drainBag();
+      busyList.captureHolderStackTraces(startedBefore);
+    } finally {
+      unlock();
     }
   }
 
@@ -438,9 +1294,10 @@ final class PooledConnectionQueue {
   private String getBusyConnectionInformation(boolean toLogger) {
     lock.lock();
     try {
+      drainBag();
       return busyList.busyConnectionInformation(toLogger);
     } finally {
-      lock.unlock();
+      unlock();
     }
   }
 
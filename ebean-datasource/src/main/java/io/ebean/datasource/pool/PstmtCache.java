@@ -1,32 +1,66 @@
 package io.ebean.datasource.pool;
 
+import io.ebean.datasource.StatementCachePolicy;
+
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
- * An LRU based cache for PreparedStatements.
+ * A cache for PreparedStatements using LRU or W-TinyLFU eviction.
+ * <p>
+ * With LRU the least recently used statement is evicted when the cache is full.
+ * <p>
+ * With TinyLFU new statements enter a small LRU window. A statement leaving
+ * the window is admitted to the (LRU) main cache only when its estimated usage
+ * frequency is higher than that of the statement it would evict, otherwise it is
+ * rejected (closed). The frequencies are recorded on every lookup such that one-off
+ * sql does not evict the frequently used statements. A statement obtained from the
+ * main cache returns directly to it (as the most recently used) rather than having
+ * to be admitted again.
  */
-final class PstmtCache extends LinkedHashMap<String, ExtendedPreparedStatement> {
-
-  private static final long serialVersionUID = -3096406924865550697L;
+final class PstmtCache {
 
   private final int maxSize;
+  private final StatementCacheMetrics metrics;
+  private final StatementMap main;
+  private final StatementMap window;
+  private final FrequencySketch sketch;
+  private final int windowSize;
+  private final int mainSize;
   private long removeCount;
+  private long rejectCount;
   private long hitCount;
   private long missCount;
 
-  PstmtCache(int maxCacheSize) {
-    // note = access ordered list.  This is what gives it the LRU order
-    super(maxCacheSize * 3, 0.75f, true);
+  PstmtCache(int maxCacheSize, StatementCachePolicy policy, StatementCacheMetrics metrics) {
     this.maxSize = maxCacheSize;
+    this.metrics = metrics;
+    if (policy == StatementCachePolicy.TINY_LFU && maxCacheSize > 2) {
+      // same capacity as LRU with the window being 1% of it
+      final int capacity = maxCacheSize - 1;
+      this.windowSize = Math.max(capacity / 100, 1);
+      this.mainSize = capacity - windowSize;
+      this.main = new StatementMap(mainSize, false);
+      this.window = new StatementMap(windowSize, false);
+      this.sketch = new FrequencySketch(capacity);
+    } else {
+      this.windowSize = 0;
+      this.mainSize = maxCacheSize;
+      this.main = new StatementMap(maxCacheSize, true);
+      this.window = null;
+      this.sketch = null;
+    }
   }
 
   /**
    * Return a summary description of this cache.
    */
   String description() {
-    return "size[" + size() + "] max[" + maxSize + "] hits[" + hitCount + "] miss[" + missCount + "] hitRatio[" + hitRatio() + "] removes[" + removeCount + "]";
+    return "size[" + size() + "] max[" + maxSize + "] hits[" + hitCount + "] miss[" + missCount + "] hitRatio[" + hitRatio() + "] removes[" + removeCount + "] rejects[" + rejectCount + "]";
   }
 
   /**
@@ -52,14 +86,40 @@ final class PstmtCache extends LinkedHashMap<String, ExtendedPreparedStatement>
     return removeCount;
   }
 
+  /**
+   * Return the number of statements not admitted to the cache (TinyLFU only).
+   */
+  long rejectCount() {
+    return rejectCount;
+  }
+
+  /**
+   * Return the number of cached statements.
+   */
+  int size() {
+    return window == null ? main.size() : main.size() + window.size();
+  }
+
+  /**
+   * Return the cached statements.
+   */
+  Collection<ExtendedPreparedStatement> values() {
+    if (window == null) {
+      return main.values();
+    }
+    final List<ExtendedPreparedStatement> values = new ArrayList<>(size());
+    values.addAll(window.values());
+    values.addAll(main.values());
+    return values;
+  }
+
   /**
    * Try to add the returning statement to the cache. If there is already a
    * matching ExtendedPreparedStatement in the cache return false else add
    * the statement to the cache and return true.
    */
   boolean returnStatement(ExtendedPreparedStatement stmt) {
-    ExtendedPreparedStatement alreadyInCache = super.get(stmt.cacheKey());
-    if (alreadyInCache != null) {
+    if (main.containsKey(stmt.cacheKey()) || (window != null && window.containsKey(stmt.cacheKey()))) {
       return false;
     }
     try {
@@ -71,49 +131,129 @@ final class PstmtCache extends LinkedHashMap<String, ExtendedPreparedStatement>
       Log.error("Error clearing PreparedStatement", e);
       return false;
     }
-    // add the returning prepared statement to the cache.
-    // Note that the LRUCache will automatically close fully old unused
-    // statements when the cache has hit its maximum size.
-    put(stmt.cacheKey(), stmt);
+    if (sketch == null) {
+      // add the returning prepared statement to the cache.
+      // Note that the LRUCache will automatically close fully old unused
+      // statements when the cache has hit its maximum size.
+      main.put(stmt.cacheKey(), stmt);
+    } else if (stmt.inMainCache) {
+      // a hit on the main cache, it stays in the main cache
+      returnToMain(stmt);
+    } else {
+      admit(stmt);
+    }
     return true;
   }
 
-  @Override
-  public ExtendedPreparedStatement get(Object key) {
-    ExtendedPreparedStatement o = super.get(key);
-    if (o == null) {
-      missCount++;
+  /**
+   * Return a statement obtained from the main cache back to it, evicting the
+   * least recently used if the main cache was filled in the meantime.
+   */
+  private void returnToMain(ExtendedPreparedStatement stmt) {
+    if (main.size() >= mainSize) {
+      removeCount++;
+      metrics.remove();
+      closeDestroy(main.removeEldest());
+    }
+    main.put(stmt.cacheKey(), stmt);
+  }
+
+  /**
+   * Add the statement to the window and admit the statement leaving the window
+   * to the main cache when it is more frequently used than the main cache victim.
+   */
+  private void admit(ExtendedPreparedStatement stmt) {
+    window.put(stmt.cacheKey(), stmt);
+    if (window.size() <= windowSize) {
+      return;
+    }
+    final ExtendedPreparedStatement candidate = window.removeEldest();
+    if (main.size() < mainSize) {
+      candidate.inMainCache = true;
+      main.put(candidate.cacheKey(), candidate);
+      return;
+    }
+    final ExtendedPreparedStatement victim = main.eldest();
+    if (sketch.frequency(candidate.cacheKey().hashCode()) > sketch.frequency(victim.cacheKey().hashCode())) {
+      main.removeEldest();
+      removeCount++;
+      metrics.remove();
+      closeDestroy(victim);
+      candidate.inMainCache = true;
+      main.put(candidate.cacheKey(), candidate);
     } else {
-      hitCount++;
+      rejectCount++;
+      metrics.reject();
+      closeDestroy(candidate);
     }
-    return o;
   }
 
-  @Override
-  public ExtendedPreparedStatement remove(Object key) {
-    ExtendedPreparedStatement o = super.remove(key);
+  /**
+   * Remove and return the statement for the given key recording the hit or miss.
+   */
+  ExtendedPreparedStatement remove(PstmtKey key) {
+    if (sketch != null) {
+      sketch.increment(key.hashCode());
+    }
+    ExtendedPreparedStatement o = main.remove(key);
+    if (o == null && window != null) {
+      o = window.remove(key);
+    }
     if (o == null) {
       missCount++;
+      metrics.miss();
     } else {
       hitCount++;
+      metrics.hit();
     }
     return o;
   }
 
-  @Override
-  protected boolean removeEldestEntry(Map.Entry<String, ExtendedPreparedStatement> eldest) {
-    if (size() < maxSize) {
-      return false;
-    }
-    removeCount++;
+  private static void closeDestroy(ExtendedPreparedStatement stmt) {
     try {
-      ExtendedPreparedStatement stmt = eldest.getValue();
       stmt.closeDestroy();
     } catch (SQLException e) {
       Log.error("Error closing ExtendedPreparedStatement", e);
     }
-    return true;
   }
 
-}
+  /**
+   * Access ordered map of the statements optionally evicting the least recently used on put.
+   */
+  private final class StatementMap extends LinkedHashMap<PstmtKey, ExtendedPreparedStatement> {
+
+    private static final long serialVersionUID = -3096406924865550697L;
+
+    private final int maxSize;
+    private final boolean evict;
 
+    StatementMap(int maxSize, boolean evict) {
+      // note = access ordered list.  This is what gives it the LRU order
+      super(maxSize * 3, 0.75f, true);
+      this.maxSize = maxSize;
+      this.evict = evict;
+    }
+
+    ExtendedPreparedStatement eldest() {
+      return values().iterator().next();
+    }
+
+    ExtendedPreparedStatement removeEldest() {
+      final var it = values().iterator();
+      final ExtendedPreparedStatement eldest = it.next();
+      it.remove();
+      return eldest;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<PstmtKey, ExtendedPreparedStatement> eldest) {
+      if (!evict || size() < maxSize) {
+        return false;
+      }
+      removeCount++;
+      metrics.remove();
+      closeDestroy(eldest.getValue());
+      return true;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package io.ebean.datasource.pool;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Key for a cached PreparedStatement.
+ * <p>
+ * The key includes the options of the prepareStatement() or prepareCall() overload
+ * used (generated keys flag, result set type, concurrency and holdability, key column
+ * indexes or names). The hash combines the cached hash codes of the sql, schema and
+ * catalog strings with the options and equality checks the options first and then the
+ * strings (which are typically the same instances) such that a lookup does not build
+ * or hash a new string. The connection reuses a mutable key for lookups (under its
+ * lock) and only copies it when a statement is added to the cache.
+ */
+final class PstmtKey {
+
+  /**
+   * The value of an option not used by the prepareStatement() overload.
+   */
+  static final int NO_FLAG = -1;
+
+  private String sql;
+  private String schema;
+  private String catalog;
+  private int flag;
+  private int type;
+  private int concurrency;
+  private int holdability;
+  private int[] columnIndexes;
+  private String[] columnNames;
+
+  /**
+   * Create a key to be reused for lookups.
+   */
+  PstmtKey() {
+  }
+
+  /**
+   * Set the key values returning this key (used for lookups).
+   */
+  PstmtKey set(String sql, String schema, String catalog, int flag, int type, int concurrency, int holdability, int[] columnIndexes, String[] columnNames) {
+    this.sql = sql;
+    this.schema = schema;
+    this.catalog = catalog;
+    this.flag = flag;
+    this.type = type;
+    this.concurrency = concurrency;
+    this.holdability = holdability;
+    this.columnIndexes = columnIndexes;
+    this.columnNames = columnNames;
+    return this;
+  }
+
+  /**
+   * Return an immutable copy of this key to add to the cache.
+   * <p>
+   * The column arrays are copied as they are owned by the caller.
+   */
+  PstmtKey copy() {
+    return new PstmtKey().set(sql, schema, catalog, flag, type, concurrency, holdability,
+      columnIndexes == null ? null : columnIndexes.clone(),
+      columnNames == null ? null : columnNames.clone());
+  }
+
+  /**
+   * Create the PreparedStatement using the overload matching the options of this key.
+   */
+  PreparedStatement prepare(Connection connection) throws SQLException {
+    if (columnIndexes != null) {
+      return connection.prepareStatement(sql, columnIndexes);
+    } else if (columnNames != null) {
+      return connection.prepareStatement(sql, columnNames);
+    } else if (holdability != NO_FLAG) {
+      return connection.prepareStatement(sql, type, concurrency, holdability);
+    } else if (type != NO_FLAG) {
+      return connection.prepareStatement(sql, type, concurrency);
+    } else if (flag != NO_FLAG) {
+      return connection.prepareStatement(sql, flag);
+    }
+    return connection.prepareStatement(sql);
+  }
+
+  /**
+   * Create the CallableStatement using the overload matching the options of this key.
+   */
+  CallableStatement prepareCall(Connection connection) throws SQLException {
+    if (holdability != NO_FLAG) {
+      return connection.prepareCall(sql, type, concurrency, holdability);
+    } else if (type != NO_FLAG) {
+      return connection.prepareCall(sql, type, concurrency);
+    }
+    return connection.prepareCall(sql);
+  }
+
+  @Override
+  public int hashCode() {
+    int h = sql.hashCode();
+    h = 31 * h + (schema == null ? 0 : schema.hashCode());
+    h = 31 * h + (catalog == null ? 0 : catalog.hashCode());
+    h = 31 * h + flag;
+    h = 31 * h + type;
+    h = 31 * h + concurrency;
+    h = 31 * h + holdability;
+    h = 31 * h + Arrays.hashCode(columnIndexes);
+    return 31 * h + Arrays.hashCode(columnNames);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof PstmtKey)) {
+      return false;
+    }
+    final PstmtKey other = (PstmtKey) obj;
+    return flag == other.flag
+      && type == other.type
+      && concurrency == other.concurrency
+      && holdability == other.holdability
+      && same(sql, other.sql)
+      && same(schema, other.schema)
+      && same(catalog, other.catalog)
+      && Arrays.equals(columnIndexes, other.columnIndexes)
+      && Arrays.equals(columnNames, other.columnNames);
+  }
+
+  private static boolean same(String a, String b) {
+    return a == b || (a != null && a.equals(b));
+  }
+
+  @Override
+  public String toString() {
+    return sql + ':' + schema + ':' + catalog + ':' + flag + ':' + type + ':' + concurrency + ':' + holdability
+      + ':' + Arrays.toString(columnIndexes) + ':' + Arrays.toString(columnNames);
+  }
+}
@@ -0,0 +1,55 @@
+package io.ebean.datasource.pool;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statement cache hits, misses, removals and rejections shared by the
+ * statement caches of all the connections of a pool.
+ * <p>
+ * Each cache adds to these as it is used such that the metrics include the
+ * connections that are still open and are read without taking any lock.
+ */
+final class StatementCacheMetrics {
+
+  private final LongAdder hit = new LongAdder();
+  private final LongAdder miss = new LongAdder();
+  private final LongAdder remove = new LongAdder();
+  private final LongAdder reject = new LongAdder();
+
+  void hit() {
+    hit.increment();
+  }
+
+  void miss() {
+    miss.increment();
+  }
+
+  void remove() {
+    remove.increment();
+  }
+
+  void reject() {
+    reject.increment();
+  }
+
+  long hitCount() {
+    return hit.sum();
+  }
+
+  long missCount() {
+    return miss.sum();
+  }
+
+  long removeCount() {
+    return remove.sum();
+  }
+
+  long rejectCount() {
+    return reject.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "hit:" + hit + " miss:" + miss + " rem:" + remove + " rej:" + reject;
+  }
+}
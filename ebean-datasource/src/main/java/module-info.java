@@ -2,6 +2,8 @@ module io.ebean.datasource {
 
   requires transitive java.sql;
   requires transitive io.ebean.datasource.api;
+  requires static jdk.jfr;
+  requires static java.management;
 
   provides io.ebean.datasource.DataSourceFactory with io.ebean.datasource.pool.ConnectionPoolFactory;
 }
\ No newline at end of file
@@ -14,6 +14,14 @@ final class ExecutorFactory {
     return Executors.newThreadPerTaskExecutor(factory);
   }
 
+  /**
+   * Return a new executor (using virtual threads) used to create connections concurrently.
+   */
+  static ExecutorService newConnectExecutor(String poolName) {
+    String name = poolName.isEmpty() ? "datasource.connect" : "datasource." + poolName + ".connect";
+    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name).factory());
+  }
+
   static Heartbeat newHeartBeat(ConnectionPool pool, int freqMillis) {
     return new VTHeartbeat(pool, freqMillis).start();
   }
@@ -24,6 +32,7 @@ final class ExecutorFactory {
     private final ConnectionPool pool;
     private final int freqMillis;
     private final Thread thread;
+    private final Thread clockThread;
 
     private VTHeartbeat(ConnectionPool pool, int freqMillis) {
       this.pool = pool;
@@ -31,6 +40,9 @@ final class ExecutorFactory {
       this.thread = Thread.ofVirtual()
               .name(nm(pool.name()))
               .unstarted(this::run);
+      this.clockThread = pool.clock().tickMillis() > 0 ? Thread.ofVirtual()
+              .name(nm(pool.name()) + ".clock")
+              .unstarted(this::runClock) : null;
     }
 
     private static String nm(String poolName) {
@@ -52,9 +64,25 @@ final class ExecutorFactory {
       }
     }
 
+    private void runClock() {
+      final PoolClock clock = pool.clock();
+      while (running.get()) {
+        clock.tick();
+        try {
+          Thread.sleep(clock.tickMillis());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+
     private Heartbeat start() {
       running.set(true);
       thread.start();
+      if (clockThread != null) {
+        clockThread.start();
+      }
       return this;
     }
 
@@ -62,6 +90,9 @@ final class ExecutorFactory {
     public void stop() {
       running.set(false);
       thread.interrupt();
+      if (clockThread != null) {
+        clockThread.interrupt();
+      }
     }
   }
 }
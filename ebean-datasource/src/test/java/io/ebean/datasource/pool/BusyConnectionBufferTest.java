@@ -96,4 +96,76 @@ public class BusyConnectionBufferTest {
 
   }
 
+  @Test
+  public void setCapacity_shrink() {
+    BusyConnectionBuffer b = new BusyConnectionBuffer(4, 2);
+
+    PooledConnection p0 = new PooledConnection("0");
+    PooledConnection p1 = new PooledConnection("1");
+    PooledConnection p2 = new PooledConnection("2");
+    PooledConnection p3 = new PooledConnection("3");
+    b.add(p0);
+    b.add(p1);
+    b.add(p2);
+    b.add(p3);
+
+    b.setCapacity(2);
+    assertEquals(2, b.capacity());
+    assertEquals(4, b.size());
+
+    // connections above the capacity keep their slot until removed
+    b.remove(p1);
+    b.remove(p3);
+    b.add(p3);
+    assertEquals(1, p3.slotId());
+    assertEquals(3, b.size());
+
+    // slot 2 is above the capacity and not reused
+    b.remove(p2);
+    assertEquals(2, b.size());
+    b.add(p2);
+    assertEquals(4, b.capacity());
+    assertEquals(2, p2.slotId());
+  }
+
+  @Test
+  public void setCapacity_shrinkBelowBusy_expect_addGrowsToEmptySlot() {
+    BusyConnectionBuffer b = new BusyConnectionBuffer(100, 20);
+    PooledConnection[] connections = new PooledConnection[60];
+    for (int i = 0; i < connections.length; i++) {
+      connections[i] = new PooledConnection(String.valueOf(i));
+      b.add(connections[i]);
+    }
+    b.setCapacity(10);
+
+    // the only empty slot is well above capacity + growBy
+    b.remove(connections[55]);
+    assertEquals(59, b.size());
+    b.add(connections[55]);
+    assertEquals(55, connections[55].slotId());
+    assertEquals(60, b.size());
+    assertEquals(70, b.capacity());
+  }
+
+  @Test
+  public void add_manySlots() {
+    BusyConnectionBuffer b = new BusyConnectionBuffer(200, 20);
+    PooledConnection[] connections = new PooledConnection[200];
+    for (int i = 0; i < connections.length; i++) {
+      connections[i] = new PooledConnection(String.valueOf(i));
+      b.add(connections[i]);
+      assertEquals(i, connections[i].slotId());
+    }
+    assertEquals(200, b.capacity());
+
+    b.remove(connections[130]);
+    b.remove(connections[70]);
+    b.add(connections[70]);
+    assertEquals(70, connections[70].slotId());
+    b.add(connections[130]);
+    assertEquals(130, connections[130].slotId());
+    assertEquals(200, b.size());
+    assertEquals(200, b.capacity());
+  }
+
 }
@@ -0,0 +1,93 @@
+package io.ebean.datasource.pool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionBagTest {
+
+  @Test
+  void offerPoll_expect_affinityFirst() {
+    ConnectionBag bag = new ConnectionBag();
+    PooledConnection p0 = new PooledConnection("0");
+    PooledConnection p1 = new PooledConnection("1");
+
+    assertThat(bag.poll()).isNull();
+    bag.offer(p0);
+    bag.offer(p1);
+    assertThat(bag.idleCount()).isEqualTo(2);
+
+    // most recently returned by this thread first
+    assertThat(bag.poll()).isSameAs(p1);
+    assertThat(bag.poll()).isSameAs(p0);
+    assertThat(bag.poll()).isNull();
+    assertThat(bag.idleCount()).isEqualTo(0);
+  }
+
+  @Test
+  void poll_otherThread_expect_sharedList() throws Exception {
+    ConnectionBag bag = new ConnectionBag();
+    PooledConnection p0 = new PooledConnection("0");
+    bag.offer(p0);
+
+    PooledConnection claimed = CompletableFuture.supplyAsync(bag::poll).get();
+    assertThat(claimed).isSameAs(p0);
+    assertThat(bag.poll()).isNull();
+  }
+
+  @Test
+  void claim_expect_onlyOnce() {
+    ConnectionBag bag = new ConnectionBag();
+    PooledConnection p0 = new PooledConnection("0");
+    assertThat(bag.claim(p0)).isFalse();
+
+    bag.offer(p0);
+    assertThat(bag.claim(p0)).isTrue();
+    assertThat(bag.claim(p0)).isFalse();
+  }
+
+  @Test
+  void idleCount_when_concurrentOfferPoll_expect_consistent() {
+    ConnectionBag bag = new ConnectionBag();
+    for (int i = 0; i < 4; i++) {
+      bag.offer(new PooledConnection("" + i));
+    }
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(CompletableFuture.runAsync(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          PooledConnection c = bag.poll();
+          if (c != null) {
+            bag.offer(c);
+          }
+        }
+      }));
+    }
+    futures.forEach(CompletableFuture::join);
+    assertThat(bag.idleCount()).isEqualTo(4);
+    assertThat(bag.drain()).hasSize(4);
+    assertThat(bag.idleCount()).isEqualTo(0);
+  }
+
+  @Test
+  void drain_expect_claimedAndClosedPurged() {
+    ConnectionBag bag = new ConnectionBag();
+    PooledConnection p0 = new PooledConnection("0");
+    PooledConnection p1 = new PooledConnection("1");
+    PooledConnection p2 = new PooledConnection("2");
+    bag.offer(p0);
+    bag.offer(p1);
+    bag.offer(p2);
+    assertThat(bag.poll()).isSameAs(p2);
+    p2.bagState = ConnectionBag.STATE_CLOSED;
+
+    assertThat(bag.drain()).containsExactly(p0, p1);
+    assertThat(bag.idleCount()).isEqualTo(0);
+    assertThat(bag.poll()).isNull();
+    assertThat(p2.bagMember).isFalse();
+  }
+}
@@ -0,0 +1,224 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.ConnectionPoolExhaustedException;
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionPoolAsyncTest {
+
+  private final ConnectionPool pool;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  ConnectionPoolAsyncTest() {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testAsync");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(1);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    pool = new ConnectionPool("testAsync", config);
+  }
+
+  @AfterEach
+  void after() {
+    executor.shutdownNow();
+    pool.shutdown();
+  }
+
+  @Test
+  void getConnectionAsync_when_free_expect_completed() throws Exception {
+    Connection connection = pool.getConnectionAsync().get(5, SECONDS);
+    assertThat(pool.status(false).busy()).isEqualTo(1);
+    connection.close();
+    assertThat(pool.status(false).free()).isEqualTo(1);
+  }
+
+  @Test
+  void getConnectionAsync_when_full_expect_completedOnReturn() throws Exception {
+    Connection held = pool.getConnection();
+
+    CompletableFuture<Connection> future = pool.getConnectionAsync(Duration.ofSeconds(5), executor);
+    assertThat(future).isNotDone();
+    assertThat(pool.status(false).waiting()).isEqualTo(1);
+
+    held.close();
+    Connection connection = future.get(5, SECONDS);
+    assertThat(connection).isSameAs(held);
+    assertThat(pool.status(false).waiting()).isEqualTo(0);
+    connection.close();
+  }
+
+  @Test
+  void getConnectionAsync_when_cancelled_expect_nextWaiterServed() throws Exception {
+    Connection held = pool.getConnection();
+
+    CompletableFuture<Connection> cancelled = pool.getConnectionAsync(Duration.ofSeconds(5), executor);
+    CompletableFuture<Connection> next = pool.getConnectionAsync(Duration.ofSeconds(5), executor);
+    cancelled.cancel(false);
+
+    held.close();
+    Connection connection = next.get(5, SECONDS);
+    assertThat(connection).isSameAs(held);
+    connection.close();
+    assertThat(pool.status(false).free()).isEqualTo(1);
+  }
+
+  @Test
+  void getConnectionAsync_when_directExecutor_expect_completedOutsideLock() throws Exception {
+    Connection held = pool.getConnection();
+
+    // the dependent stage runs on the returning thread, another thread must still be able to take the lock
+    CompletableFuture<String> future = pool.getConnectionAsync(Duration.ofSeconds(5), Runnable::run)
+      .thenApply(connection -> {
+        try {
+          return executor.submit(pool::busyConnectionInformation).get(5, SECONDS);
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        } finally {
+          try {
+            connection.close();
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      });
+
+    held.close();
+    assertThat(future.get(10, SECONDS)).isNotNull();
+    assertThat(pool.status(false).free()).isEqualTo(1);
+  }
+
+  @Test
+  void getConnectionAsync_when_timeout_expect_exhausted() throws Exception {
+    Connection held = pool.getConnection();
+    try {
+      CompletableFuture<Connection> future = pool.getConnectionAsync(Duration.ofMillis(100), executor);
+      assertThatThrownBy(() -> future.get(5, SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(ConnectionPoolExhaustedException.class);
+      assertThat(pool.status(false).waiting()).isEqualTo(0);
+    } finally {
+      held.close();
+    }
+  }
+
+  @Test
+  void getConnectionAsync_when_staleHandedAfterTimeout_expect_exhausted() throws Exception {
+    MockDataSource dataSource = new MockDataSource();
+    PoolClock.VirtualClock clock = PoolClock.virtual(1_000_000);
+    DataSourceConfig config = new DataSourceConfig().dataSource(dataSource.dataSource());
+    config.setMinConnections(1);
+    config.setMaxConnections(2);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.setMaxInactiveTimeSecs(1);
+    config.setTrimPoolFreqSecs(1);
+    config.validateOnHeartbeat(false);
+    ConnectionPool stalePool = new ConnectionPool("testAsyncStale", config, clock);
+    ExecutorService blockingExecutor = Executors.newSingleThreadExecutor();
+    try {
+      Connection first = stalePool.getConnection();
+      Connection second = stalePool.getConnection();
+      // the handed connection is stale when the request completes
+      Executor staleExecutor = task -> {
+        clock.advance(2_100);
+        new Thread(task).start();
+      };
+      CompletableFuture<Connection> future = stalePool.getConnectionAsync(Duration.ofMillis(100), staleExecutor);
+      Future<Connection> blocking = blockingExecutor.submit(() -> stalePool.getConnection(Duration.ofSeconds(5)));
+      while (stalePool.status(false).waiting() < 2) {
+        Thread.sleep(5);
+      }
+      // the timeout fires while validating, the blocking waiter then takes the freed capacity
+      Mockito.when(dataSource.created().get(1).isValid(Mockito.anyInt())).thenAnswer(invocation -> {
+        Thread.sleep(300);
+        return false;
+      });
+      second.close();
+      Connection grown = blocking.get(5, SECONDS);
+
+      // queued again past its deadline, the request must still complete
+      assertThatThrownBy(() -> future.get(5, SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(ConnectionPoolExhaustedException.class);
+      assertThat(stalePool.status(false).waiting()).isEqualTo(0);
+      grown.close();
+      first.close();
+    } finally {
+      blockingExecutor.shutdownNow();
+      stalePool.shutdown();
+    }
+  }
+
+  @Test
+  void getConnectionAsync_when_executorRejectsTimeout_expect_exhausted() throws Exception {
+    DataSourceConfig config = new DataSourceConfig().dataSource(new MockDataSource().dataSource());
+    config.setMinConnections(1);
+    config.setMaxConnections(1);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    ConnectionPool rejectPool = new ConnectionPool("testAsyncReject", config);
+    try {
+      Connection held = rejectPool.getConnection();
+      Executor rejecting = task -> {
+        throw new RejectedExecutionException("rejected");
+      };
+      CompletableFuture<Connection> future = rejectPool.getConnectionAsync(Duration.ofMillis(50), rejecting);
+      assertThat(rejectPool.status(false).waiting()).isEqualTo(1);
+
+      // the timeout runs even though the executor rejects it
+      assertThatThrownBy(() -> future.get(5, SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(ConnectionPoolExhaustedException.class);
+      assertThat(rejectPool.status(false).waiting()).isEqualTo(0);
+      held.close();
+    } finally {
+      rejectPool.shutdown();
+    }
+  }
+
+  @Test
+  void getConnectionAsync_when_cancelled_expect_notWaiting() throws Exception {
+    DataSourceConfig config = new DataSourceConfig().dataSource(new MockDataSource().dataSource());
+    config.setMinConnections(1);
+    config.setMaxConnections(1);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    ConnectionPool cancelPool = new ConnectionPool("testAsyncCancel", config);
+    try {
+      Connection held = cancelPool.getConnection();
+      CompletableFuture<Connection> future = cancelPool.getConnectionAsync(Duration.ofSeconds(30), executor);
+      assertThat(cancelPool.status(false).waiting()).isEqualTo(1);
+
+      // the cancelled request leaves its lane at once
+      assertThat(future.cancel(false)).isTrue();
+      assertThat(cancelPool.status(false).waiting()).isEqualTo(0);
+
+      held.close();
+      try (Connection connection = cancelPool.getConnection()) {
+        assertThat(connection).isNotNull();
+      }
+      assertThat(cancelPool.status(false).busy()).isEqualTo(0);
+    } finally {
+      cancelPool.shutdown();
+    }
+  }
+}
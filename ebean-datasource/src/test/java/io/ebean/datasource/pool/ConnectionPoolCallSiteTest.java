@@ -0,0 +1,125 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.CallSiteStatus;
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolCallSiteTest {
+
+  private final ConnectionPool pool;
+
+  ConnectionPoolCallSiteTest() {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testCallSite");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(2);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.callSiteTracking(true);
+    config.callSiteFrames(1);
+    pool = new ConnectionPool("testCallSite", config);
+  }
+
+  @AfterEach
+  void after() {
+    pool.shutdown();
+  }
+
+  private void slowQuery() throws Exception {
+    try (Connection connection = pool.getConnection()) {
+      Thread.sleep(20);
+    }
+  }
+
+  private void fastQuery() throws Exception {
+    try (Connection connection = pool.getConnection()) {
+      assertThat(connection).isNotNull();
+    }
+  }
+
+  @Test
+  void callSiteStatus_expect_aggregatedPerCallSite() throws Exception {
+    slowQuery();
+    slowQuery();
+    fastQuery();
+
+    List<CallSiteStatus> status = pool.callSiteStatus(false);
+    assertThat(status).hasSize(2);
+    CallSiteStatus slow = status.get(0);
+    assertThat(slow.callSite()).contains("ConnectionPoolCallSiteTest.slowQuery");
+    assertThat(slow.borrowCount()).isEqualTo(2);
+    assertThat(slow.totalHoldMicros()).isGreaterThanOrEqualTo(40_000);
+    assertThat(slow.maxHoldMicros()).isGreaterThanOrEqualTo(20_000);
+
+    CallSiteStatus fast = status.get(1);
+    assertThat(fast.callSite()).contains("ConnectionPoolCallSiteTest.fastQuery");
+    assertThat(fast.borrowCount()).isEqualTo(1);
+    assertThat(fast.id()).isNotEqualTo(slow.id());
+  }
+
+  @Test
+  void callSiteStatus_async_expect_callingThreadSite() throws Exception {
+    pool.getConnectionAsync().get(5, SECONDS).close();
+
+    List<CallSiteStatus> status = pool.callSiteStatus(true);
+    assertThat(status).hasSize(1);
+    assertThat(status.get(0).callSite()).contains("ConnectionPoolCallSiteTest.callSiteStatus_async_expect_callingThreadSite");
+    assertThat(status.get(0).borrowCount()).isEqualTo(1);
+
+    assertThat(pool.callSiteStatus(false).get(0).borrowCount()).isEqualTo(0);
+  }
+
+  @Test
+  void callSiteStatus_when_notTracking_expect_empty() throws Exception {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testCallSiteOff");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setHeartbeatFreqSecs(0);
+    ConnectionPool other = new ConnectionPool("testCallSiteOff", config);
+    try {
+      other.getConnection().close();
+      assertThat(other.callSiteStatus(false)).isEmpty();
+    } finally {
+      other.shutdown();
+    }
+  }
+
+  private static CallSite first(CallSiteTracker tracker) {
+    return tracker.callSite();
+  }
+
+  private static CallSite second(CallSiteTracker tracker) {
+    return tracker.callSite();
+  }
+
+  @Test
+  void callSite_when_maxCallSitesReached_expect_other() {
+    CallSiteTracker tracker = new CallSiteTracker(1, null, 1);
+    CallSite first = first(tracker);
+    assertThat(first(tracker)).isSameAs(first);
+    first.borrowed();
+
+    // further call sites are aggregated in the other call site
+    CallSite other = second(tracker);
+    assertThat(other).isNotSameAs(first);
+    assertThat(second(tracker)).isSameAs(other);
+    other.borrowed();
+    other.borrowed();
+
+    List<CallSiteStatus> status = tracker.status(false);
+    assertThat(status).extracting(CallSiteStatus::callSite)
+      .containsExactlyInAnyOrder(first.callSite(), "other");
+    assertThat(first.callSite()).contains("ConnectionPoolCallSiteTest.first");
+    assertThat(other.status(false).borrowCount()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,144 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolClockTest {
+
+  private final PoolClock.VirtualClock clock = PoolClock.virtual(1_000_000);
+  private final MockDataSource dataSource;
+  private final List<Connection> created;
+
+  ConnectionPoolClockTest() throws Exception {
+    dataSource = new MockDataSource();
+    created = dataSource.created();
+  }
+
+  private ConnectionPool createPool(String name) {
+    DataSourceConfig config = new DataSourceConfig().dataSource(dataSource.dataSource());
+    config.setMinConnections(1);
+    config.setMaxConnections(3);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.setMaxInactiveTimeSecs(10);
+    config.setTrimPoolFreqSecs(5);
+    config.setMaxAgeMinutes(5);
+    config.validateOnHeartbeat(false);
+    return new ConnectionPool(name, config, clock);
+  }
+
+  @Test
+  void trim_when_clockAdvanced_expect_trimmedToMinimum() throws Exception {
+    ConnectionPool pool = createPool("testClockTrim");
+    try {
+      Connection c1 = pool.getConnection();
+      Connection c2 = pool.getConnection();
+      Connection c3 = pool.getConnection();
+      c1.close();
+      c2.close();
+      c3.close();
+      assertThat(pool.status(false).free()).isEqualTo(3);
+
+      // not yet inactive for maxInactiveTimeSecs
+      clock.advance(6_000);
+      pool.heartbeat();
+      assertThat(pool.status(false).free()).isEqualTo(3);
+
+      clock.advance(5_001);
+      pool.heartbeat();
+      assertThat(pool.status(false).free()).isEqualTo(1);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void maxAge_when_clockAdvanced_expect_closedOnReturn() throws Exception {
+    ConnectionPool pool = createPool("testClockMaxAge");
+    try {
+      Connection connection = pool.getConnection();
+      clock.advance(5 * 60_000 + 1);
+      connection.close();
+
+      assertThat(pool.status(false).free()).isEqualTo(0);
+      assertThat(pool.status(false).busy()).isEqualTo(0);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void reset_when_clockNotAdvanced_expect_onlyPriorConnectionsClosedOnReturn() throws Exception {
+    ConnectionPool pool = createPool("testClockReset");
+    try {
+      Connection prior = pool.getConnection();
+      pool.reset();
+      prior.close();
+      assertThat(pool.status(false).free()).isEqualTo(0);
+
+      // the pool clock has not moved but the connection is created after the reset
+      final long resetMillis = System.currentTimeMillis();
+      while (System.currentTimeMillis() == resetMillis) {
+        Thread.onSpinWait();
+      }
+      Connection connection = pool.getConnection();
+      connection.close();
+      assertThat(pool.status(false).free()).isEqualTo(1);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void reset_when_waiting_expect_waiterServedFromClosedBusyConnections() throws Exception {
+    ConnectionPool pool = createPool("testClockResetWaiting");
+    try {
+      pool.getConnection();
+      pool.getConnection();
+      pool.getConnection();
+      CompletableFuture<Connection> waiting = pool.getConnectionAsync(Duration.ofSeconds(10), Runnable::run);
+      assertThat(pool.status(false).waiting()).isEqualTo(1);
+
+      // the busy connections are closed by the reset as leaked (after leakTimeMinutes)
+      clock.advance(31 * 60_000);
+      pool.reset();
+      Connection connection = waiting.get(5, SECONDS);
+      assertThat(pool.status(false).waiting()).isEqualTo(0);
+      connection.close();
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void stale_when_clockAdvanced_expect_validatedOnBorrow() throws Exception {
+    ConnectionPool pool = createPool("testClockStale");
+    try {
+      PooledConnection first = (PooledConnection) pool.getConnection();
+      first.close();
+      Mockito.when(created.get(0).isValid(Mockito.anyInt())).thenReturn(false);
+
+      // not stale so not validated
+      assertThat(pool.getConnection()).isSameAs(first);
+      first.close();
+
+      // stale after maxInactiveTimeSecs + trimPoolFreqSecs
+      clock.advance(15_001);
+      PooledConnection second = (PooledConnection) pool.getConnection();
+      assertThat(second).isNotSameAs(first);
+      assertThat(second.delegate()).isSameAs(created.get(1));
+      second.close();
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolGrowTest {
+
+  @Test
+  void grow_when_connectIsSlow_expect_otherThreadsNotBlocked() throws Exception {
+    CountDownLatch connecting = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger connectCount = new AtomicInteger();
+
+    DataSource dataSource = Mockito.mock(DataSource.class);
+    Mockito.when(dataSource.getConnection()).thenAnswer(invocation -> {
+      if (connectCount.incrementAndGet() > 1) {
+        // simulate a slow connect when growing the pool
+        connecting.countDown();
+        release.await();
+      }
+      return DriverManager.getConnection("jdbc:h2:mem:testGrow", "sa", "");
+    });
+
+    DataSourceConfig config = new DataSourceConfig().dataSource(dataSource);
+    config.setMinConnections(1);
+    config.setMaxConnections(4);
+    ConnectionPool pool = new ConnectionPool("testGrow", config);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Connection first = pool.getConnection();
+      Future<Connection> growing = executor.submit(() -> pool.getConnection());
+      assertThat(connecting.await(5, SECONDS)).isTrue();
+
+      // return and obtain while the other thread is still connecting
+      first.rollback();
+      first.close();
+      Connection again = pool.getConnection();
+      assertThat(again).isSameAs(first);
+      assertThat(pool.status(false).busy()).isEqualTo(1);
+
+      release.countDown();
+      Connection grown = growing.get(5, SECONDS);
+      assertThat(grown).isNotSameAs(again);
+      assertThat(pool.status(false).busy()).isEqualTo(2);
+      assertThat(pool.size()).isEqualTo(2);
+
+      grown.rollback();
+      grown.close();
+      again.rollback();
+      again.close();
+      assertThat(pool.status(false).free()).isEqualTo(2);
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void setMaxSize_when_belowBusy_expect_returnAndBorrowAgain() throws Exception {
+    DataSourceConfig config = new DataSourceConfig().dataSource(new MockDataSource().dataSource());
+    config.setMinConnections(1);
+    config.setMaxConnections(60);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    ConnectionPool pool = new ConnectionPool("testShrinkBelowBusy", config);
+    try {
+      Connection[] connections = new Connection[60];
+      for (int i = 0; i < connections.length; i++) {
+        connections[i] = pool.getConnection();
+      }
+      pool.setMaxSize(10);
+
+      // returned connections are closed until the pool is back at the reduced max size
+      for (int i = 0; i < 50; i++) {
+        connections[i].close();
+      }
+      assertThat(pool.status(false).busy()).isEqualTo(10);
+      assertThat(pool.status(false).free()).isEqualTo(0);
+
+      // the busy slots from the reduced capacity up to slot 59 are all still occupied
+      connections[55].close();
+      Connection again = pool.getConnection();
+      assertThat(again).isSameAs(connections[55]);
+      assertThat(pool.status(false).busy()).isEqualTo(10);
+
+      for (int i = 50; i < connections.length; i++) {
+        connections[i].close();
+      }
+      assertThat(pool.status(false).busy()).isEqualTo(0);
+      assertThat(pool.status(false).free()).isEqualTo(10);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolHandoffTest implements WaitFor {
+
+  private final ConnectionPool pool;
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  ConnectionPoolHandoffTest() {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testHandoff");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(1);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.setWaitTimeoutMillis(5000);
+    pool = new ConnectionPool("testHandoff", config);
+  }
+
+  @AfterEach
+  void after() {
+    executor.shutdownNow();
+    pool.shutdown();
+  }
+
+  @Test
+  void returnedConnection_expect_handedToWaitersInOrder() throws Exception {
+    Connection held = pool.getConnection();
+
+    Future<Connection> first = executor.submit(() -> pool.getConnection());
+    waitFor(() -> assertThat(pool.status(false).waiting()).isEqualTo(1));
+    Future<Connection> second = executor.submit(() -> pool.getConnection());
+    waitFor(() -> assertThat(pool.status(false).waiting()).isEqualTo(2));
+
+    held.close();
+    Connection firstConnection = first.get(5, SECONDS);
+    assertThat(firstConnection).isSameAs(held);
+    assertThat(second.isDone()).isFalse();
+    assertThat(pool.status(false).waiting()).isEqualTo(1);
+    assertThat(pool.status(false).busy()).isEqualTo(1);
+    assertThat(pool.status(false).free()).isEqualTo(0);
+
+    firstConnection.close();
+    Connection secondConnection = second.get(5, SECONDS);
+    assertThat(secondConnection).isSameAs(held);
+    secondConnection.close();
+
+    assertThat(pool.status(false).waiting()).isEqualTo(0);
+    assertThat(pool.status(false).waitCount()).isEqualTo(2);
+    assertThat(pool.status(false).free()).isEqualTo(1);
+    assertThat(pool.size()).isEqualTo(1);
+  }
+
+  @Test
+  void closedConnection_expect_waiterGrowsPool() throws Exception {
+    PooledConnection held = (PooledConnection) pool.getConnection();
+
+    Future<Connection> waiting = executor.submit(() -> pool.getConnection());
+    waitFor(() -> assertThat(pool.status(false).waiting()).isEqualTo(1));
+
+    // closing frees capacity, the waiter is given the slot to create a new connection
+    pool.returnConnectionForceClose(held, false);
+    Connection connection = waiting.get(5, SECONDS);
+    assertThat(connection).isNotSameAs(held);
+    connection.close();
+
+    assertThat(pool.status(false).waiting()).isEqualTo(0);
+    assertThat(pool.status(false).free()).isEqualTo(1);
+    assertThat(pool.size()).isEqualTo(1);
+  }
+
+}
@@ -0,0 +1,63 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import io.ebean.datasource.PoolStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolHoldTimeTest {
+
+  private final ConnectionPool pool;
+
+  ConnectionPoolHoldTimeTest() {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testHoldTime");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(2);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.longHoldMillis(50);
+    pool = new ConnectionPool("testHoldTime", config);
+  }
+
+  @AfterEach
+  void after() {
+    pool.shutdown();
+  }
+
+  @Test
+  void holdTime_expect_recordedOnClose() throws Exception {
+    try (Connection connection = pool.getConnection()) {
+      assertThat(connection).isNotNull();
+    }
+    try (Connection connection = pool.getConnection()) {
+      Thread.sleep(60);
+    }
+
+    PoolStatus status = pool.status(true);
+    assertThat(status.longHoldCount()).isEqualTo(1);
+    assertThat(status.maxHoldMicros()).isGreaterThanOrEqualTo(60_000);
+    assertThat(status.p99HoldMicros()).isGreaterThanOrEqualTo(60_000);
+    assertThat(status.holdMicros(50)).isLessThan(50_000);
+    assertThat(status.holdHistogram().values()).containsExactly(1L, 1L);
+
+    PoolStatus afterReset = pool.status(false);
+    assertThat(afterReset.longHoldCount()).isEqualTo(0);
+    assertThat(afterReset.maxHoldMicros()).isEqualTo(0);
+    assertThat(afterReset.holdHistogram()).isEmpty();
+  }
+
+  @Test
+  void holdTime_when_busy_expect_notRecorded() throws Exception {
+    try (Connection connection = pool.getConnection()) {
+      assertThat(pool.status(false).holdHistogram()).isEmpty();
+    }
+    assertThat(pool.status(false).holdHistogram().values()).containsExactly(1L);
+  }
+}
@@ -0,0 +1,161 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.ConnectionLeak;
+import io.ebean.datasource.DataSourceConfig;
+import io.ebean.datasource.DataSourcePoolListener;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionPoolLeakDetectionTest {
+
+  private final List<ConnectionLeak> leaks = new CopyOnWriteArrayList<>();
+
+  private ConnectionPool createPool(String name, int maxConnections, boolean reclaim) {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:" + name);
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(maxConnections);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.validateOnHeartbeat(false);
+    config.leakDetectionMillis(50);
+    config.leakReclaim(reclaim);
+    config.setListener(new DataSourcePoolListener() {
+      @Override
+      public void onLeakSuspected(ConnectionLeak leak) {
+        leaks.add(leak);
+      }
+    });
+    return new ConnectionPool(name, config);
+  }
+
+  @Test
+  void heldTooLong_expect_reportedOnce() throws Exception {
+    ConnectionPool pool = createPool("testLeakReport", 2, false);
+    try {
+      Connection leaked = pool.getConnection();
+      try (Connection connection = pool.getConnection()) {
+        pool.heartbeat();
+        assertThat(leaks).isEmpty();
+
+        Thread.sleep(60);
+        pool.heartbeat();
+        pool.heartbeat();
+        assertThat(connection).isNotNull();
+      }
+      assertThat(leaks).hasSize(2);
+      ConnectionLeak leak = leaks.get(0);
+      assertThat(leak.poolName()).isEqualTo("testLeakReport");
+      assertThat(leak.heldMillis()).isGreaterThanOrEqualTo(50);
+      assertThat(leak.reclaimed()).isFalse();
+      assertThat(leak.description()).contains(leak.connectionName());
+
+      // not reclaimed so still usable
+      leaked.createStatement().close();
+      leaked.close();
+      assertThat(pool.status(false).busy()).isEqualTo(0);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void heldTooLong_when_reclaim_expect_closedAndCapacityReused() throws Exception {
+    ConnectionPool pool = createPool("testLeakReclaim", 1, true);
+    try {
+      Connection leaked = pool.getConnection();
+      Thread.sleep(60);
+      pool.heartbeat();
+
+      assertThat(leaks).hasSize(1);
+      assertThat(leaks.get(0).reclaimed()).isTrue();
+      assertThat(pool.status(false).busy()).isEqualTo(0);
+
+      try (Connection connection = pool.getConnection()) {
+        assertThat(connection).isNotSameAs(leaked);
+      }
+      // closing the reclaimed connection does not return it to the pool
+      leaked.close();
+      assertThat(pool.status(false).free()).isEqualTo(1);
+      assertThatThrownBy(leaked::createStatement).isInstanceOf(SQLException.class);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void borrow_when_heartbeatConcurrent_expect_noLeakReportedForNewBorrow() throws Exception {
+    borrowConcurrentWithHeartbeat("testLeakBorrowRace", false);
+  }
+
+  @Test
+  void borrow_when_threadAffinityAndHeartbeatConcurrent_expect_noLeakReportedForNewBorrow() throws Exception {
+    borrowConcurrentWithHeartbeat("testLeakBorrowRaceBag", true);
+  }
+
+  /**
+   * The clock is advanced past leakDetectionMillis before each borrow such that a
+   * connection still carrying the start time of its previous borrow is reported.
+   * The connection is then also stale and validated (slowly) after it is registered
+   * as busy, widening the window before it is reset for use.
+   */
+  private void borrowConcurrentWithHeartbeat(String name, boolean threadAffinity) throws Exception {
+    PoolClock.VirtualClock clock = PoolClock.virtual(1_000_000);
+    MockDataSource dataSource = new MockDataSource();
+    DataSourceConfig config = new DataSourceConfig().dataSource(dataSource.dataSource());
+    config.setMinConnections(1);
+    config.setMaxConnections(1);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.setMaxInactiveTimeSecs(1);
+    config.setTrimPoolFreqSecs(1);
+    config.validateOnHeartbeat(false);
+    config.threadAffinity(threadAffinity);
+    config.leakDetectionMillis(5_000);
+    config.leakReclaim(true);
+    config.setListener(new DataSourcePoolListener() {
+      @Override
+      public void onLeakSuspected(ConnectionLeak leak) {
+        leaks.add(leak);
+      }
+    });
+    ConnectionPool pool = new ConnectionPool(name, config, clock);
+    Mockito.when(dataSource.created().get(0).isValid(Mockito.anyInt())).thenAnswer(invocation -> {
+      Thread.sleep(1);
+      return true;
+    });
+    AtomicBoolean done = new AtomicBoolean();
+    Thread heartbeat = new Thread(() -> {
+      while (!done.get()) {
+        pool.heartbeat();
+      }
+    });
+    try {
+      heartbeat.start();
+      for (int i = 0; i < 1_000; i++) {
+        clock.advance(10_000);
+        try (Connection connection = pool.getConnection()) {
+          assertThat(connection.isClosed()).isFalse();
+        }
+      }
+      done.set(true);
+      heartbeat.join();
+      assertThat(leaks).isEmpty();
+      assertThat(pool.status(false).busy()).isEqualTo(0);
+    } finally {
+      done.set(true);
+      pool.shutdown();
+    }
+  }
+}
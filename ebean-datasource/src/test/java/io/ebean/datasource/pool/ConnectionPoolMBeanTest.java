@@ -0,0 +1,61 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import io.ebean.datasource.DataSourcePoolMXBean;
+import io.ebean.datasource.PoolStatus;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolMBeanTest {
+
+  @Test
+  void registerMBean_expect_attributesAndOperations() throws Exception {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testMBean");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(4);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.registerMBean(true);
+    ConnectionPool pool = new ConnectionPool("testMBean", config);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName = new ObjectName("io.ebean.datasource:type=DataSourcePool,name=\"testMBean\"");
+    try {
+      DataSourcePoolMXBean mbean = JMX.newMXBeanProxy(server, objectName, DataSourcePoolMXBean.class);
+      try (Connection connection = pool.getConnection()) {
+        assertThat(mbean.getName()).isEqualTo("testMBean");
+        assertThat(mbean.getBusy()).isEqualTo(1);
+        assertThat(mbean.getHitCount()).isEqualTo(1);
+        assertThat(mbean.getMaxSize()).isEqualTo(4);
+        assertThat(mbean.dumpBusyConnections()).contains("testMBean0");
+      }
+      assertThat(mbean.getFree()).isEqualTo(1);
+
+      // attributes are read individually, matching the status when idle
+      PoolStatus status = pool.status(false);
+      assertThat(mbean.getWaitCount()).isEqualTo(status.waitCount());
+      assertThat(mbean.getHighWaterMark()).isEqualTo(status.highWaterMark());
+      assertThat(mbean.getTotalAcquireMicros()).isEqualTo(status.totalAcquireMicros());
+      assertThat(mbean.getMeanAcquireNanos()).isEqualTo(status.meanAcquireNanos());
+      assertThat(mbean.getP99AcquireMicros()).isEqualTo(status.p99AcquireMicros());
+      assertThat(mbean.getP99HoldMicros()).isEqualTo(status.p99HoldMicros());
+
+      server.setAttribute(objectName, new Attribute("MaxSize", 3));
+      assertThat(pool.status(false).maxSize()).isEqualTo(3);
+    } finally {
+      pool.shutdown();
+    }
+    assertThat(server.isRegistered(objectName)).isFalse();
+  }
+}
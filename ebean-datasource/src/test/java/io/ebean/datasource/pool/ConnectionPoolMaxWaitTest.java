@@ -0,0 +1,72 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.ConnectionPoolExhaustedException;
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionPoolMaxWaitTest {
+
+  private final ConnectionPool pool;
+
+  ConnectionPoolMaxWaitTest() {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testMaxWait");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(1);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.setWaitTimeoutMillis(5000);
+    pool = new ConnectionPool("testMaxWait", config);
+  }
+
+  @AfterEach
+  void after() {
+    pool.shutdown();
+  }
+
+  @Test
+  void getConnection_when_free_expect_noWait() throws Exception {
+    try (Connection connection = pool.getConnection(Duration.ZERO)) {
+      assertThat(connection).isNotNull();
+    }
+    assertThat(pool.status(false).waitCount()).isEqualTo(0);
+  }
+
+  @Test
+  void getConnection_when_full_expect_exhaustedAfterMaxWait() throws Exception {
+    try (Connection held = pool.getConnection()) {
+      long start = System.currentTimeMillis();
+      assertThatThrownBy(() -> pool.getConnection(Duration.ofMillis(50)))
+        .isInstanceOfSatisfying(ConnectionPoolExhaustedException.class, e -> {
+          assertThat(e.getMessage()).contains("waited [50] millis");
+          assertThat(e.waitMillis()).isBetween(50L, System.currentTimeMillis() - start);
+        });
+      // the pool waitTimeoutMillis of 5000 is not used
+      assertThat(System.currentTimeMillis() - start).isLessThan(2000);
+      assertThat(pool.status(false).waiting()).isEqualTo(0);
+      // 2 acquires, the max is the one that waited
+      assertThat(pool.status(false).p999AcquireMicros()).isGreaterThanOrEqualTo(50_000);
+      assertThat(pool.status(false).acquireHistogram().values()).containsExactly(1L, 1L);
+      assertThat(held).isNotNull();
+    }
+  }
+
+  @Test
+  void getConnection_when_fullAndZeroWait_expect_exhaustedImmediately() throws Exception {
+    try (Connection held = pool.getConnection()) {
+      assertThatThrownBy(() -> pool.getConnection(Duration.ZERO))
+        .isInstanceOfSatisfying(ConnectionPoolExhaustedException.class, e -> assertThat(e.waitMillis()).isLessThan(1000));
+      assertThat(held).isNotNull();
+    }
+  }
+
+}
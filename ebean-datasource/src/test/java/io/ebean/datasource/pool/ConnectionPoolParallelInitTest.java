@@ -0,0 +1,63 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import io.ebean.datasource.DataSourceInitialiseException;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionPoolParallelInitTest {
+
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  private DataSourceConfig config(DataSource dataSource) {
+    DataSourceConfig config = new DataSourceConfig().dataSource(dataSource);
+    config.setMinConnections(8);
+    config.setMaxConnections(10);
+    config.setHeartbeatFreqSecs(0);
+    config.initialConnectionParallelism(4);
+    return config;
+  }
+
+  @Test
+  void initialConnections_expect_createdConcurrently() throws Exception {
+    DataSource dataSource = Mockito.mock(DataSource.class);
+    Mockito.when(dataSource.getConnection()).thenAnswer(invocation -> {
+      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(100);
+        return DriverManager.getConnection("jdbc:h2:mem:testParallelInit", "sa", "");
+      } finally {
+        active.decrementAndGet();
+      }
+    });
+
+    ConnectionPool pool = new ConnectionPool("testParallelInit", config(dataSource));
+    try {
+      assertThat(pool.size()).isEqualTo(8);
+      assertThat(pool.status(false).free()).isEqualTo(8);
+      assertThat(maxActive.get()).isBetween(2, 4);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void initialConnections_when_connectFails_expect_failOnStart() throws Exception {
+    DataSource dataSource = Mockito.mock(DataSource.class);
+    Mockito.when(dataSource.getConnection()).thenThrow(new SQLException("down"));
+
+    assertThatThrownBy(() -> new ConnectionPool("testParallelInitFail", config(dataSource)))
+      .isInstanceOf(DataSourceInitialiseException.class)
+      .hasMessageContaining("down");
+  }
+
+}
@@ -0,0 +1,98 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.ConnectionPoolExhaustedException;
+import io.ebean.datasource.DataSourceConfig;
+import io.ebean.datasource.PoolStatus;
+import io.ebean.datasource.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionPoolPriorityTest implements WaitFor {
+
+  private final ConnectionPool pool;
+  private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+  ConnectionPoolPriorityTest() {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testPriority");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(2);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.setWaitTimeoutMillis(5000);
+    config.reservedHighPriority(1);
+    pool = new ConnectionPool("testPriority", config);
+  }
+
+  @AfterEach
+  void after() {
+    executor.shutdownNow();
+    pool.shutdown();
+  }
+
+  @Test
+  void reserved_expect_onlyUsedByHighPriority() throws Exception {
+    try (Connection normal = pool.getConnection()) {
+      assertThatThrownBy(() -> pool.getConnection(Duration.ofMillis(50)))
+        .isInstanceOf(ConnectionPoolExhaustedException.class);
+
+      try (Connection high = pool.getConnection(Priority.HIGH)) {
+        assertThat(high).isNotSameAs(normal);
+        assertThat(pool.status(false).busy()).isEqualTo(2);
+      }
+    }
+    PoolStatus status = pool.status(false);
+    assertThat(status.hitCount(Priority.HIGH)).isEqualTo(1);
+    assertThat(status.hitCount(Priority.NORMAL)).isEqualTo(2);
+    assertThat(status.waitCount(Priority.NORMAL)).isEqualTo(1);
+    assertThat(status.waitCount(Priority.HIGH)).isEqualTo(0);
+  }
+
+  @Test
+  void waiters_expect_servedInPriorityOrder() throws Exception {
+    Connection normal = pool.getConnection();
+    Connection high = pool.getConnection(Priority.HIGH);
+
+    List<Priority> served = new CopyOnWriteArrayList<>();
+    Future<Connection> low = executor.submit(() -> obtain(Priority.LOW, served));
+    waitFor(() -> assertThat(pool.status(false).waiting()).isEqualTo(1));
+    Future<Connection> normalWaiter = executor.submit(() -> obtain(Priority.NORMAL, served));
+    waitFor(() -> assertThat(pool.status(false).waiting()).isEqualTo(2));
+    Future<Connection> highWaiter = executor.submit(() -> obtain(Priority.HIGH, served));
+    waitFor(() -> assertThat(pool.status(false).waiting()).isEqualTo(3));
+
+    normal.close();
+    highWaiter.get(5, SECONDS).close();
+    high.close();
+    normalWaiter.get(5, SECONDS).close();
+    low.get(5, SECONDS).close();
+
+    assertThat(served).containsExactly(Priority.HIGH, Priority.NORMAL, Priority.LOW);
+    PoolStatus status = pool.status(false);
+    assertThat(status.waitCount(Priority.LOW)).isEqualTo(1);
+    assertThat(status.waitCount(Priority.NORMAL)).isEqualTo(1);
+    assertThat(status.waitCount(Priority.HIGH)).isEqualTo(1);
+    assertThat(status.waiting()).isEqualTo(0);
+  }
+
+  private Connection obtain(Priority priority, List<Priority> served) throws Exception {
+    Connection connection = pool.getConnection(priority);
+    served.add(priority);
+    return connection;
+  }
+
+}
@@ -0,0 +1,154 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolReclaimUnreachableTest implements WaitFor {
+
+  private final ConnectionPool pool;
+
+  ConnectionPoolReclaimUnreachableTest() {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testReclaimUnreachable");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(1);
+    config.setHeartbeatFreqSecs(0);
+    config.reclaimUnreachable(true);
+    pool = new ConnectionPool("testReclaimUnreachable", config);
+  }
+
+  @AfterEach
+  void after() {
+    pool.shutdown();
+  }
+
+  private void dropWithoutClose() throws SQLException {
+    Connection connection = pool.getConnection();
+    connection.createStatement().close();
+  }
+
+  @Test
+  void dropped_expect_returnedToPool() throws Exception {
+    dropWithoutClose();
+    assertThat(pool.status(false).busy()).isEqualTo(1);
+
+    waitFor(() -> {
+      System.gc();
+      assertThat(pool.status(false).busy()).isEqualTo(0);
+    });
+    assertThat(pool.status(false).free()).isEqualTo(1);
+    try (Connection connection = pool.getConnection()) {
+      connection.rollback();
+    }
+  }
+
+  @Test
+  void droppedWithOpenStatement_expect_notReclaimedUntilStatementClosed() throws Exception {
+    PreparedStatement statement = pool.getConnection().prepareStatement("select 1");
+    assertThat(statement.getConnection()).isInstanceOf(ConnectionHandle.class);
+    ResultSet resultSet = statement.executeQuery();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    // the handle is still in use via the statement and result set
+    assertThat(pool.status(false).busy()).isEqualTo(1);
+    assertThat(resultSet.next()).isTrue();
+    resultSet.close();
+    statement.close();
+
+    waitFor(() -> {
+      System.gc();
+      assertThat(pool.status(false).busy()).isEqualTo(0);
+    });
+  }
+
+  private void dropWithUnclosedStatement() throws SQLException {
+    Connection connection = pool.getConnection();
+    PreparedStatement statement = connection.prepareStatement("select 1");
+    ResultSet resultSet = statement.executeQuery();
+    assertThat(resultSet.next()).isTrue();
+    connection.createStatement().executeQuery("select 1");
+  }
+
+  @Test
+  void droppedWithUnclosedStatement_expect_reclaimed() throws Exception {
+    dropWithUnclosedStatement();
+    assertThat(pool.status(false).busy()).isEqualTo(1);
+
+    waitFor(() -> {
+      System.gc();
+      assertThat(pool.status(false).busy()).isEqualTo(0);
+    });
+    try (Connection connection = pool.getConnection()) {
+      connection.rollback();
+    }
+  }
+
+  private static ConnectionPool retainingPool() throws SQLException {
+    DataSourceConfig config = new DataSourceConfig().dataSource(new MockDataSource().retainStatements().dataSource());
+    config.setMinConnections(1);
+    config.setMaxConnections(1);
+    config.setHeartbeatFreqSecs(0);
+    config.reclaimUnreachable(true);
+    return new ConnectionPool("testReclaimRetained", config);
+  }
+
+  private static ResultSet dropAllButResultSet(ConnectionPool pool) throws SQLException {
+    Connection connection = pool.getConnection();
+    connection.createStatement().executeQuery("select 1");
+    return connection.prepareStatement("select 1").executeQuery();
+  }
+
+  @Test
+  void droppedWithUnclosedStatement_when_driverRetainsStatements_expect_reclaimed() throws Exception {
+    ConnectionPool retaining = retainingPool();
+    try {
+      ResultSet resultSet = dropAllButResultSet(retaining);
+      for (int i = 0; i < 5; i++) {
+        System.gc();
+        Thread.sleep(20);
+      }
+      // the handle is still in use via the result set
+      assertThat(retaining.status(false).busy()).isEqualTo(1);
+      assertThat(resultSet.next()).isTrue();
+      resultSet = null;
+
+      waitFor(() -> {
+        System.gc();
+        assertThat(retaining.status(false).busy()).isEqualTo(0);
+      });
+    } finally {
+      retaining.shutdown();
+    }
+  }
+
+  @Test
+  void closed_expect_handleClosed() throws Exception {
+    Connection connection = pool.getConnection();
+    assertThat(connection).isInstanceOf(ConnectionHandle.class);
+    connection.rollback();
+    connection.close();
+    assertThat(connection.isClosed()).isTrue();
+    // closing again does nothing
+    connection.close();
+    assertThat(pool.status(false).free()).isEqualTo(1);
+
+    Connection async = pool.getConnectionAsync().get(5, SECONDS);
+    assertThat(async).isInstanceOf(ConnectionHandle.class);
+    async.rollback();
+    async.close();
+    assertThat(pool.status(false).busy()).isEqualTo(0);
+  }
+}
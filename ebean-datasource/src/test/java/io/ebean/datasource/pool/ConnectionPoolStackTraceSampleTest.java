@@ -0,0 +1,54 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolStackTraceSampleTest {
+
+  private ConnectionPool createPool(String name, int sampleRate) {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:" + name);
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(2);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.captureStackTrace(true);
+    config.stackTraceSampleRate(sampleRate);
+    config.longHoldMillis(50);
+    return new ConnectionPool(name, config);
+  }
+
+  @Test
+  void sampleRateOne_expect_stackTraceCaptured() throws Exception {
+    ConnectionPool pool = createPool("testSampleOne", 1);
+    try (Connection connection = pool.getConnection()) {
+      String description = ((PooledConnection) connection).fullDescription();
+      assertThat(description).contains("stackTrace[[").doesNotContain("holderStackTrace");
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void notSampled_expect_holderStackTraceAfterLongHold() throws Exception {
+    ConnectionPool pool = createPool("testSampleRare", Integer.MAX_VALUE);
+    try (Connection connection = pool.getConnection()) {
+      PooledConnection pooledConnection = (PooledConnection) connection;
+      assertThat(pooledConnection.fullDescription()).contains("stackTrace[]");
+
+      Thread.sleep(60);
+      assertThat(pooledConnection.fullDescription()).contains("stackTrace[]");
+      // the heartbeat captures the stack of the thread holding the connection
+      pool.heartbeat();
+      assertThat(pooledConnection.fullDescription()).contains("holderStackTrace[[");
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolStaleTest {
+
+  @Test
+  void staleConnection_when_invalid_expect_replacedWithNewConnection() throws Exception {
+    MockDataSource dataSource = new MockDataSource();
+    PoolClock.VirtualClock clock = PoolClock.virtual(1_000_000);
+
+    DataSourceConfig config = new DataSourceConfig().dataSource(dataSource.dataSource());
+    config.setMinConnections(1);
+    config.setMaxConnections(2);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+    config.setMaxInactiveTimeSecs(1);
+    config.setTrimPoolFreqSecs(1);
+    config.validateOnHeartbeat(false);
+    ConnectionPool pool = new ConnectionPool("testStale", config, clock);
+    try {
+      PooledConnection first = (PooledConnection) pool.getConnection();
+      first.close();
+      assertThat(dataSource.created()).hasSize(1);
+
+      // move the clock such that the free connection is considered stale
+      clock.advance(2_100);
+      Mockito.when(dataSource.created().get(0).isValid(Mockito.anyInt())).thenReturn(false);
+
+      PooledConnection second = (PooledConnection) pool.getConnection();
+      assertThat(second).isNotSameAs(first);
+      assertThat(second.delegate()).isSameAs(dataSource.created().get(1));
+      assertThat(pool.status(false).busy()).isEqualTo(1);
+      assertThat(pool.status(false).free()).isEqualTo(0);
+      second.close();
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+}
@@ -109,6 +109,40 @@ class ConnectionPoolTest {
     assertThat(status.maxAcquireMicros()).isBetween(0L, 9000L);
   }
 
+  @Test
+  void status_reset_concurrentWithBorrowers_expect_noLostCounts() throws Exception {
+    pool.status(true);
+    final int threads = 4;
+    final int borrows = 2_000;
+    final Thread[] borrowers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      borrowers[i] = new Thread(() -> {
+        for (int j = 0; j < borrows; j++) {
+          try (Connection connection = pool.getConnection()) {
+            connection.rollback();
+          } catch (SQLException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      });
+      borrowers[i].start();
+    }
+    long hits = 0;
+    boolean running = true;
+    while (running) {
+      hits += pool.status(true).hitCount();
+      running = false;
+      for (Thread borrower : borrowers) {
+        running |= borrower.isAlive();
+      }
+    }
+    for (Thread borrower : borrowers) {
+      borrower.join();
+    }
+    hits += pool.status(true).hitCount();
+    assertThat(hits).isEqualTo(threads * borrows);
+  }
+
   @Test
   void unwrapConnection() throws SQLException {
     Connection connection = pool.getConnection();
@@ -0,0 +1,95 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import io.ebean.datasource.PoolStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolThreadAffinityTest {
+
+  private final ConnectionPool pool;
+
+  ConnectionPoolThreadAffinityTest() {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testAffinity");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(2);
+    config.setMaxConnections(4);
+    config.threadAffinity(true);
+    pool = new ConnectionPool("testAffinity", config);
+  }
+
+  @AfterEach
+  void after() {
+    pool.shutdown();
+  }
+
+  @Test
+  void getConnection_expect_sameConnectionForThread() throws Exception {
+    Connection con1 = pool.getConnection();
+    con1.rollback();
+    con1.close();
+
+    PoolStatus status = pool.status(false);
+    assertThat(status.busy()).isEqualTo(0);
+    assertThat(status.free()).isEqualTo(2);
+
+    Connection con2 = pool.getConnection();
+    assertThat(con2).isSameAs(con1);
+    assertThat(pool.status(false).busy()).isEqualTo(1);
+    con2.rollback();
+    con2.close();
+  }
+
+  @Test
+  void getConnection_when_fastPath_expect_acquireRecorded() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      try (Connection connection = pool.getConnection()) {
+        connection.rollback();
+      }
+    }
+    PoolStatus status = pool.status(false);
+    assertThat(status.hitCount()).isEqualTo(10);
+    // every hit including those via the lock free fast path is in the acquire histogram
+    long recorded = status.acquireHistogram().values().stream().mapToLong(Long::longValue).sum();
+    assertThat(recorded).isEqualTo(10);
+  }
+
+  @Test
+  void concurrentUse_expect_consistentStatus() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < 1000; j++) {
+            try (Connection connection = pool.getConnection()) {
+              connection.rollback();
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    PoolStatus status = pool.status(false);
+    assertThat(status.busy()).isEqualTo(0);
+    assertThat(status.free()).isEqualTo(pool.size());
+    assertThat(status.hitCount()).isEqualTo(8000);
+    assertThat(status.highWaterMark()).isLessThanOrEqualTo(4);
+  }
+}
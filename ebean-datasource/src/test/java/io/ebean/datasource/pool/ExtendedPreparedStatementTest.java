@@ -3,9 +3,14 @@ package io.ebean.datasource.pool;
 import io.ebean.datasource.DataSourceConfig;
 import org.junit.jupiter.api.Test;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 public class ExtendedPreparedStatementTest {
 
@@ -37,4 +42,70 @@ public class ExtendedPreparedStatementTest {
       connection.rollback();
 		}
 	}
+
+	@Test
+	public void prepareStatement_expect_cachedPerSqlAndFlag() throws SQLException {
+
+		ConnectionPool pool = createPool();
+		try (Connection connection = pool.getConnection()) {
+			PreparedStatement first = connection.prepareStatement("select CURRENT_DATE");
+			first.close();
+			// an equal but different sql instance
+			PreparedStatement second = connection.prepareStatement(new String("select CURRENT_DATE"));
+			assertThat(second).isSameAs(first);
+			PreparedStatement withFlag = connection.prepareStatement("select CURRENT_DATE", Statement.RETURN_GENERATED_KEYS);
+			assertThat(withFlag).isNotSameAs(first);
+			withFlag.close();
+			second.close();
+			assertThat(connection.prepareStatement("select CURRENT_DATE", Statement.RETURN_GENERATED_KEYS)).isSameAs(withFlag);
+			connection.rollback();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void prepareCall_expect_cachedAndMetricsReported() throws SQLException {
+
+		ConnectionPool pool = createPool();
+		try (Connection connection = pool.getConnection()) {
+			CallableStatement first = connection.prepareCall("call CURRENT_DATE");
+			first.executeQuery().close();
+			first.close();
+			CallableStatement second = connection.prepareCall("call CURRENT_DATE");
+			assertThat(second).isSameAs(first);
+			second.close();
+			connection.rollback();
+			// included while the connection is open
+			assertThat(pool.cscHit()).isEqualTo(1);
+		} finally {
+			pool.shutdown();
+		}
+		assertThat(pool.cscHit()).isEqualTo(1);
+		assertThat(pool.cscMiss()).isEqualTo(1);
+		assertThat(pool.pscHit()).isEqualTo(0);
+	}
+
+	@Test
+	public void prepareStatement_overloads_expect_cachedPerOptions() throws SQLException {
+
+		ConnectionPool pool = createPool();
+		try (Connection connection = pool.getConnection()) {
+			String sql = "select CURRENT_DATE";
+			PreparedStatement types = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			types.close();
+			PreparedStatement names = connection.prepareStatement(sql, new String[]{"ID"});
+			names.close();
+			PreparedStatement indexes = connection.prepareStatement(sql, new int[]{1});
+			indexes.close();
+
+			assertThat(connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).isSameAs(types);
+			assertThat(connection.prepareStatement(sql, new String[]{"ID"})).isSameAs(names);
+			assertThat(connection.prepareStatement(sql, new int[]{1})).isSameAs(indexes);
+			assertThat(connection.prepareStatement(sql, new String[]{"OTHER"})).isNotSameAs(names);
+			connection.rollback();
+		} finally {
+			pool.shutdown();
+		}
+	}
 }
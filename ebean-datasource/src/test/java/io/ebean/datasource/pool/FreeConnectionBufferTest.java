@@ -76,6 +76,52 @@ class FreeConnectionBufferTest {
 
   }
 
+  @Test
+  void add_beyondCapacity_expect_grow() {
+    FreeConnectionBuffer b = new FreeConnectionBuffer(1);
+    PooledConnection p0 = new PooledConnection("0");
+    PooledConnection p1 = new PooledConnection("1");
+    PooledConnection p2 = new PooledConnection("2");
+    b.add(p0);
+    b.add(p1);
+    b.add(p2);
+    assertEquals(3, b.size());
+    assertSame(p2, b.remove());
+    assertSame(p1, b.remove());
+    assertSame(p0, b.remove());
+    assertTrue(b.isEmpty());
+  }
+
+  @Test
+  void trim_expect_coldEndIdleTrimmedAndOrderRetained() throws Exception {
+    FreeConnectionBuffer b = new FreeConnectionBuffer(4);
+    PooledConnection p0 = new PooledConnection("0");
+    Thread.sleep(5);
+    PooledConnection p1 = new PooledConnection("1");
+    PooledConnection p2 = new PooledConnection("2");
+    PooledConnection p3 = new PooledConnection("3");
+    b.add(p0);
+    b.add(p1);
+    b.add(p2);
+    b.add(p3);
+
+    // only the cold end is idle, stops at the first connection used since
+    assertEquals(1, b.trim(1, p1.lastUsedTime(), 0));
+    assertEquals(ConnectionBag.STATE_CLOSED, p0.bagState);
+    assertEquals(3, b.size());
+
+    // all idle but the minSize most recently used
+    assertEquals(2, b.trim(1, p3.lastUsedTime() + 1, 0));
+    assertEquals(1, b.size());
+    assertSame(p3, b.remove());
+
+    // max age checks all of the connections
+    b.add(p1);
+    b.add(p2);
+    assertEquals(2, b.trim(0, 0, p3.lastUsedTime() + 1));
+    assertTrue(b.isEmpty());
+  }
+
   @Test
   void listIterator() {
     PooledConnection p0 = new PooledConnection("0");
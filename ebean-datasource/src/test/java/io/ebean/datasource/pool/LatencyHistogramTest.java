@@ -0,0 +1,69 @@
+package io.ebean.datasource.pool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+  @Test
+  void bucket_expect_boundsContainValue() {
+    for (long value = 0; value < 100_000; value++) {
+      assertContains(value);
+    }
+    for (long value = 100_000; value < Long.MAX_VALUE / 2; value = value * 3 + 7) {
+      assertContains(value);
+    }
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    assertEquals(0, LatencyHistogram.bucket(-1));
+  }
+
+  private void assertContains(long value) {
+    int bucket = LatencyHistogram.bucket(value);
+    if (bucket == LatencyHistogram.BUCKETS - 1) {
+      return;
+    }
+    long upper = LatencyHistogram.upperBound(bucket);
+    long lower = bucket == 0 ? 0 : LatencyHistogram.upperBound(bucket - 1) + 1;
+    assertTrue(lower <= value && value <= upper, "value " + value + " bucket " + bucket);
+    // relative error at most 1/16
+    assertTrue(upper - lower <= value / 16, "value " + value + " range " + (upper - lower));
+  }
+
+  @Test
+  void percentile() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 990; i++) {
+      histogram.record(1_000);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(1_000_000);
+    }
+    long[] snapshot = histogram.snapshot(false);
+    assertEquals(1_023, LatencyHistogram.percentile(snapshot, 50));
+    assertEquals(1_023, LatencyHistogram.percentile(snapshot, 99));
+    assertEquals(1_015_807, LatencyHistogram.percentile(snapshot, 99.9));
+    assertEquals(1_015_807, LatencyHistogram.percentile(snapshot, 100));
+
+    SortedMap<Long, Long> buckets = LatencyHistogram.buckets(snapshot);
+    assertEquals(2, buckets.size());
+    assertEquals(990L, buckets.get(1_023L));
+    assertEquals(10L, buckets.get(1_015_807L));
+  }
+
+  @Test
+  void percentile_when_empty_expect_zero() {
+    assertEquals(0, LatencyHistogram.percentile(new LatencyHistogram().snapshot(false), 99));
+  }
+
+  @Test
+  void snapshot_reset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(100);
+    assertEquals(1L, LatencyHistogram.buckets(histogram.snapshot(true)).get(103L));
+    assertTrue(LatencyHistogram.buckets(histogram.snapshot(false)).isEmpty());
+  }
+}
@@ -0,0 +1,76 @@
+package io.ebean.datasource.pool;
+
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A mock DataSource for pool tests that creates valid mock connections and records them.
+ */
+final class MockDataSource {
+
+  private final List<Connection> created = new ArrayList<>();
+  private final List<Object> retained = new ArrayList<>();
+  private final DataSource dataSource;
+  private boolean retainStatements;
+
+  MockDataSource() throws SQLException {
+    dataSource = Mockito.mock(DataSource.class);
+    Mockito.when(dataSource.getConnection()).thenAnswer(invocation -> newConnection());
+  }
+
+  private Connection newConnection() throws SQLException {
+    Connection connection = Mockito.mock(Connection.class);
+    Mockito.when(connection.getTransactionIsolation()).thenReturn(Connection.TRANSACTION_READ_COMMITTED);
+    Mockito.when(connection.getAutoCommit()).thenReturn(true);
+    Mockito.when(connection.isValid(Mockito.anyInt())).thenReturn(true);
+    if (retainStatements) {
+      Mockito.when(connection.createStatement()).thenAnswer(invocation -> retain(Mockito.mock(Statement.class)));
+      Mockito.when(connection.prepareStatement(Mockito.anyString())).thenAnswer(invocation -> retain(Mockito.mock(PreparedStatement.class)));
+    }
+    created.add(connection);
+    return connection;
+  }
+
+  private <T extends Statement> T retain(T statement) throws SQLException {
+    ResultSet resultSet = Mockito.mock(ResultSet.class);
+    Mockito.when(resultSet.next()).thenReturn(true);
+    Mockito.when(statement.executeQuery(Mockito.anyString())).thenReturn(resultSet);
+    if (statement instanceof PreparedStatement) {
+      Mockito.when(((PreparedStatement) statement).executeQuery()).thenReturn(resultSet);
+    }
+    retained.add(statement);
+    retained.add(resultSet);
+    return statement;
+  }
+
+  /**
+   * Reference the statements and result sets of connections created from now on
+   * until the data source is dropped (as drivers that track open statements do).
+   */
+  MockDataSource retainStatements() {
+    retainStatements = true;
+    return this;
+  }
+
+  /**
+   * Return the DataSource to use for the pool.
+   */
+  DataSource dataSource() {
+    return dataSource;
+  }
+
+  /**
+   * Return the connections created so far (in order).
+   */
+  List<Connection> created() {
+    return created;
+  }
+}
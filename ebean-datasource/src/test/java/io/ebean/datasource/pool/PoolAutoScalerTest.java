@@ -0,0 +1,124 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PoolAutoScalerTest {
+
+  private final PoolAutoScaler scaler = new PoolAutoScaler(null, null, 50, 30);
+
+  @Test
+  void target_when_waitAboveTarget_expect_grow() {
+    assertThat(scaler.target(100_000, 10, 2, 20, 12, 100_000)).isEqualTo(15);
+  }
+
+  @Test
+  void target_when_growCapped_expect_max() {
+    assertThat(scaler.target(100_000, 10, 2, 12, 20, 100_000)).isEqualTo(12);
+  }
+
+  @Test
+  void target_when_p99BelowTarget_expect_noGrow() {
+    assertThat(scaler.target(100_000, 10, 2, 20, 9, 40_000)).isEqualTo(10);
+  }
+
+  @Test
+  void target_when_lowDemand_expect_gradualShrink() {
+    assertThat(scaler.target(100_000, 20, 2, 20, 1, 0)).isEqualTo(15);
+    // within the cool down period
+    assertThat(scaler.target(110_000, 15, 2, 20, 1, 0)).isEqualTo(15);
+    assertThat(scaler.target(130_000, 15, 2, 20, 1, 0)).isEqualTo(12);
+  }
+
+  @Test
+  void target_when_shrink_expect_notBelowLower() {
+    assertThat(scaler.target(100_000, 4, 3, 20, 0, 0)).isEqualTo(3);
+  }
+
+  @Test
+  void target_when_moderateDemand_expect_noChange() {
+    // demand is more than half the current size, hysteresis holds the size
+    assertThat(scaler.target(100_000, 10, 2, 20, 6, 0)).isEqualTo(10);
+  }
+
+  @Test
+  void target_when_outOfRange_expect_bounded() {
+    assertThat(scaler.target(100_000, 30, 2, 20, 6, 0)).isEqualTo(20);
+  }
+
+  @Test
+  void run_when_idle_expect_shrinkAndCloseExcessFree() throws Exception {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testAutoscale");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(8);
+    config.initialConnections(8);
+    config.setHeartbeatFreqSecs(0);
+    config.autoscale(true);
+    config.autoscaleCooldownSecs(0);
+    ConnectionPool pool = new ConnectionPool("testAutoscale", config);
+    try {
+      Connection connection = pool.getConnection();
+      assertThat(pool.size()).isEqualTo(8);
+
+      pool.heartbeat();
+      assertThat(pool.status(false).maxSize()).isEqualTo(6);
+      assertThat(pool.status(false).free()).isEqualTo(5);
+      assertThat(pool.maxSize()).isEqualTo(8);
+
+      connection.close();
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void run_when_shrinkBelowBusy_expect_returnedConnectionsClosed() throws Exception {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testAutoscaleBusy");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(8);
+    config.setHeartbeatFreqSecs(0);
+    config.validateOnHeartbeat(false);
+    config.autoscale(true);
+    config.autoscaleCooldownSecs(0);
+    ConnectionPool pool = new ConnectionPool("testAutoscaleBusy", config);
+    try {
+      // no demand, shrink from 8 to 6
+      pool.heartbeat();
+      assertThat(pool.status(false).maxSize()).isEqualTo(6);
+
+      Connection[] connections = new Connection[6];
+      for (int i = 0; i < connections.length; i++) {
+        connections[i] = pool.getConnection();
+      }
+      // the smoothed demand is still low, shrink to 5 with 6 busy connections
+      pool.heartbeat();
+      assertThat(pool.status(false).maxSize()).isEqualTo(5);
+      assertThat(pool.size()).isEqualTo(6);
+
+      // closed rather than returned while above the max size
+      connections[0].close();
+      assertThat(pool.status(false).busy()).isEqualTo(5);
+      assertThat(pool.status(false).free()).isEqualTo(0);
+
+      connections[1].close();
+      assertThat(pool.status(false).busy()).isEqualTo(4);
+      assertThat(pool.status(false).free()).isEqualTo(1);
+      for (int i = 2; i < connections.length; i++) {
+        connections[i].close();
+      }
+      assertThat(pool.status(false).free()).isEqualTo(5);
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
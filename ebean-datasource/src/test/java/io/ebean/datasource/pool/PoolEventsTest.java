@@ -0,0 +1,65 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.DataSourceConfig;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PoolEventsTest {
+
+  @Test
+  void recording_expect_poolEvents() throws Exception {
+    DataSourceConfig config = new DataSourceConfig();
+    config.setUrl("jdbc:h2:mem:testPoolEvents");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(1);
+    config.setAutoCommit(true);
+    config.setHeartbeatFreqSecs(0);
+
+    Path file = Files.createTempFile("pool-events", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("io.ebean.datasource.Borrow");
+      recording.enable("io.ebean.datasource.Return");
+      recording.enable("io.ebean.datasource.Grow");
+      recording.enable("io.ebean.datasource.Exhausted");
+      recording.start();
+
+      ConnectionPool pool = new ConnectionPool("testPoolEvents", config);
+      try (Connection connection = pool.getConnection()) {
+        assertThatThrownBy(() -> pool.getConnection(Duration.ofMillis(10))).isInstanceOf(SQLException.class);
+      } finally {
+        pool.shutdown();
+      }
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+
+    assertThat(events.stream().map(e -> e.getEventType().getName()).collect(Collectors.toList()))
+      .containsExactly("io.ebean.datasource.Grow", "io.ebean.datasource.Borrow", "io.ebean.datasource.Exhausted", "io.ebean.datasource.Return");
+
+    RecordedEvent borrow = events.get(1);
+    assertThat(borrow.getString("pool")).isEqualTo("testPoolEvents");
+    assertThat(borrow.getString("connection")).isEqualTo("testPoolEvents0");
+    assertThat(borrow.getInt("busy")).isEqualTo(1);
+
+    RecordedEvent exhausted = events.get(2);
+    assertThat(exhausted.getDuration("waitTime")).isGreaterThanOrEqualTo(Duration.ofMillis(10));
+    assertThat(exhausted.getInt("maxSize")).isEqualTo(1);
+  }
+}
@@ -0,0 +1,124 @@
+package io.ebean.datasource.pool;
+
+import io.ebean.datasource.StatementCachePolicy;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.PreparedStatement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PstmtCacheTest {
+
+  private final PooledConnection connection = new PooledConnection("test");
+
+  private static PstmtKey key(String sql) {
+    return new PstmtKey().set(sql, null, null, PstmtKey.NO_FLAG, PstmtKey.NO_FLAG, PstmtKey.NO_FLAG, PstmtKey.NO_FLAG, null, null);
+  }
+
+  /**
+   * Lookup the sql returning the cached statement or a new one (as a miss) to the cache.
+   */
+  private boolean use(PstmtCache cache, String sql) {
+    ExtendedPreparedStatement stmt = cache.remove(key(sql));
+    boolean hit = stmt != null;
+    if (!hit) {
+      stmt = new ExtendedPreparedStatement(connection, Mockito.mock(PreparedStatement.class), key(sql));
+    }
+    cache.returnStatement(stmt);
+    return hit;
+  }
+
+  private int hotHits(PstmtCache cache) {
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 8; i++) {
+        use(cache, "hot" + i);
+      }
+    }
+    // a burst of one-off sql
+    for (int i = 0; i < 50; i++) {
+      use(cache, "select * from t where id in (" + i + ")");
+    }
+    int hits = 0;
+    for (int i = 0; i < 8; i++) {
+      if (use(cache, "hot" + i)) {
+        hits++;
+      }
+    }
+    return hits;
+  }
+
+  @Test
+  void lru_when_oneOffBurst_expect_hotStatementsEvicted() {
+    PstmtCache cache = new PstmtCache(11, StatementCachePolicy.LRU, new StatementCacheMetrics());
+    assertThat(hotHits(cache)).isEqualTo(0);
+    assertThat(cache.rejectCount()).isEqualTo(0);
+    assertThat(cache.size()).isEqualTo(10);
+  }
+
+  @Test
+  void tinyLfu_when_oneOffBurst_expect_hotStatementsRetained() {
+    PstmtCache cache = new PstmtCache(11, StatementCachePolicy.TINY_LFU, new StatementCacheMetrics());
+    assertThat(hotHits(cache)).isEqualTo(8);
+    assertThat(cache.rejectCount()).isGreaterThanOrEqualTo(40);
+    assertThat(cache.size()).isEqualTo(10);
+    assertThat(cache.description()).contains("rejects[");
+  }
+
+  @Test
+  void tinyLfu_when_frequenciesSaturated_expect_mainHitsRetained() {
+    PstmtCache cache = new PstmtCache(11, StatementCachePolicy.TINY_LFU, new StatementCacheMetrics());
+    // fill the main cache with hot statements whose frequencies saturate (tie)
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 9; i++) {
+        use(cache, "hot" + i);
+      }
+    }
+    int hits = 0;
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 9; i++) {
+        if (use(cache, "hot" + i)) {
+          hits++;
+        }
+        // one-off sql passing through the window
+        use(cache, "select * from t where id = " + round + i);
+      }
+    }
+    assertThat(hits).isEqualTo(45);
+    assertThat(cache.size()).isEqualTo(10);
+  }
+
+  @Test
+  void metrics_expect_sharedAcrossCachesWhileOpen() {
+    StatementCacheMetrics metrics = new StatementCacheMetrics();
+    PstmtCache first = new PstmtCache(2, StatementCachePolicy.LRU, metrics);
+    PstmtCache second = new PstmtCache(2, StatementCachePolicy.LRU, metrics);
+    use(first, "a");
+    use(first, "a");
+    use(second, "a");
+    use(second, "b");
+    use(second, "c");
+
+    assertThat(metrics.hitCount()).isEqualTo(1);
+    assertThat(metrics.missCount()).isEqualTo(4);
+    assertThat(metrics.removeCount()).isEqualTo(second.removeCount());
+    assertThat(metrics.hitCount()).isEqualTo(first.hitCount() + second.hitCount());
+  }
+
+  @Test
+  void frequencySketch_expect_minimumCountSaturatingAndAging() {
+    FrequencySketch sketch = new FrequencySketch(16);
+    int hash = "hot".hashCode();
+    for (int i = 0; i < 20; i++) {
+      sketch.increment(hash);
+    }
+    assertThat(sketch.frequency(hash)).isEqualTo(15);
+    assertThat(sketch.frequency("cold".hashCode())).isEqualTo(0);
+
+    // aged when the sample size (10 * 16) of increments is reached
+    for (int i = 0; i < 160; i++) {
+      sketch.increment(("other" + i).hashCode());
+    }
+    assertThat(sketch.frequency(hash)).isLessThan(15);
+  }
+}